@@ -0,0 +1,106 @@
+package com.openclassrooms.starterjwt.benchmarks;
+
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.crypto.BoundedPasswordEncoder;
+import com.openclassrooms.starterjwt.security.crypto.CalibratedBCryptPasswordEncoder;
+import com.openclassrooms.starterjwt.security.jwt.AuthTokenFilter;
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.jwt.RevokedTokenRegistry;
+import com.openclassrooms.starterjwt.security.jwt.VerifiedTokenCache;
+import com.openclassrooms.starterjwt.security.services.UserDenyList;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.Optional;
+
+/**
+ * Builds application components outside of Spring, injecting what {@code @Value}/{@code @Autowired} would.
+ */
+final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    static JwtUtils jwtUtils(String secret, int expirationMs) {
+        JwtUtils jwtUtils = new JwtUtils();
+        inject(jwtUtils, "jwtSecret", secret);
+        inject(jwtUtils, "jwtExpirationMs", expirationMs);
+        jwtUtils.init();
+        return jwtUtils;
+    }
+
+    static Authentication authentication() {
+        UserDetailsImpl userDetails = UserDetailsImpl.builder()
+                .id(1L)
+                .username("yoga@studio.com")
+                .firstName("John")
+                .lastName("Doe")
+                .admin(false)
+                .build();
+
+        return new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+    }
+
+    static User user() {
+        return User.builder()
+                .id(1L)
+                .email("yoga@studio.com")
+                .firstName("John")
+                .lastName("Doe")
+                .password("encodedPassword")
+                .admin(false)
+                .build();
+    }
+
+    /**
+     * Serves {@link #user()} from {@code findByEmail}, standing in for the database.
+     */
+    static UserDetailsServiceImpl userDetailsService() {
+        User user = user();
+        UserRepository userRepository = (UserRepository) Proxy.newProxyInstance(
+                UserRepository.class.getClassLoader(),
+                new Class<?>[] {UserRepository.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("findByEmail")) {
+                        return Optional.of(user).filter(u -> u.getEmail().equals(args[0]));
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+
+        return new UserDetailsServiceImpl(userRepository);
+    }
+
+    static AuthTokenFilter authTokenFilter(JwtUtils jwtUtils, VerifiedTokenCache verifiedTokenCache, boolean claimsOnly) {
+        AuthTokenFilter filter = new AuthTokenFilter();
+        inject(filter, "jwtUtils", jwtUtils);
+        inject(filter, "verifiedTokenCache", verifiedTokenCache);
+        inject(filter, "userDetailsService", userDetailsService());
+        inject(filter, "userDenyList", new UserDenyList(86400000));
+        inject(filter, "revokedTokenRegistry", new RevokedTokenRegistry(1000000));
+        inject(filter, "claimsOnly", claimsOnly);
+        return filter;
+    }
+
+    /**
+     * Same composition as {@code PasswordEncoderConfig#passwordEncoder()} with its default settings.
+     */
+    static BoundedPasswordEncoder passwordEncoder(int strength) {
+        return new BoundedPasswordEncoder(new CalibratedBCryptPasswordEncoder(strength),
+                Runtime.getRuntime().availableProcessors(), 64, 1);
+    }
+
+    static void inject(Object target, String fieldName, Object value) {
+        try {
+            Field field = target.getClass().getDeclaredField(fieldName);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to inject field: " + fieldName, e);
+        }
+    }
+}
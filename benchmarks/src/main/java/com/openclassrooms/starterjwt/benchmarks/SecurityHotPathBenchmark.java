@@ -0,0 +1,93 @@
+package com.openclassrooms.starterjwt.benchmarks;
+
+import com.openclassrooms.starterjwt.security.jwt.AuthTokenFilter;
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.jwt.VerifiedTokenCache;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What every authenticated request pays before reaching a controller: token issuing at login,
+ * validation, and the whole {@link AuthTokenFilter} pass with a warm or a cold verified-token cache.
+ * Run with {@code -prof gc} to report the allocation rate next to the throughput.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SecurityHotPathBenchmark {
+
+    private static final FilterChain NO_OP_CHAIN = (request, response) -> { };
+
+    @Param({"false", "true"})
+    public boolean claimsOnly;
+
+    private JwtUtils jwtUtils;
+
+    private VerifiedTokenCache verifiedTokenCache;
+
+    private AuthTokenFilter authTokenFilter;
+
+    private Authentication authentication;
+
+    private String token;
+
+    private MockHttpServletRequest request;
+
+    private MockHttpServletResponse response;
+
+    @Setup
+    public void setUp() {
+        jwtUtils = BenchmarkFixtures.jwtUtils("openclassrooms", 900000);
+        verifiedTokenCache = new VerifiedTokenCache(10000);
+        authTokenFilter = BenchmarkFixtures.authTokenFilter(jwtUtils, verifiedTokenCache, claimsOnly);
+        authentication = BenchmarkFixtures.authentication();
+        token = jwtUtils.generateJwtToken(authentication);
+
+        request = new MockHttpServletRequest("GET", "/api/session");
+        request.addHeader("Authorization", "Bearer " + token);
+        response = new MockHttpServletResponse();
+    }
+
+    @Benchmark
+    public String generateJwtToken() {
+        return jwtUtils.generateJwtToken(authentication);
+    }
+
+    @Benchmark
+    public boolean validateJwtToken() {
+        return jwtUtils.validateJwtToken(token);
+    }
+
+    @Benchmark
+    public Object filterWarmCache() throws ServletException, IOException {
+        return filter();
+    }
+
+    @Benchmark
+    public Object filterColdCache() throws ServletException, IOException {
+        verifiedTokenCache.invalidateAll();
+        return filter();
+    }
+
+    /**
+     * Clears the context in the measured call itself: a {@code Level.Invocation} teardown would
+     * also be paid around the token benchmarks and distort them.
+     */
+    private Object filter() throws ServletException, IOException {
+        authTokenFilter.doFilter(request, response, NO_OP_CHAIN);
+        Object authenticated = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return authenticated;
+    }
+}
@@ -1,30 +1,68 @@
 package com.openclassrooms.starterjwt.controllers;
 
 
+import com.openclassrooms.starterjwt.dto.EnrolmentResultDto;
+import com.openclassrooms.starterjwt.dto.ParticipantPageDto;
 import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionPageDto;
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
 import com.openclassrooms.starterjwt.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.repository.SessionSpecifications;
+import com.openclassrooms.starterjwt.services.ParticipationQueue;
+import com.openclassrooms.starterjwt.services.SessionExporter;
+import com.openclassrooms.starterjwt.services.SessionListCache;
 import com.openclassrooms.starterjwt.services.SessionService;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.persistence.Tuple;
 import javax.validation.Valid;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
 @RequestMapping("/api/session")
 @Log4j2
 public class SessionController {
+    private static final int DEFAULT_PAGE_SIZE = 20;
+
     private final SessionMapper sessionMapper;
     private final SessionService sessionService;
+    private final SessionListCache sessionListCache;
+    private final SessionExporter sessionExporter;
+    private final ParticipationQueue participationQueue;
 
 
     public SessionController(SessionService sessionService,
-                             SessionMapper sessionMapper) {
+                             SessionMapper sessionMapper,
+                             SessionListCache sessionListCache,
+                             SessionExporter sessionExporter,
+                             ParticipationQueue participationQueue) {
         this.sessionMapper = sessionMapper;
         this.sessionService = sessionService;
+        this.sessionListCache = sessionListCache;
+        this.sessionExporter = sessionExporter;
+        this.participationQueue = participationQueue;
     }
 
     @GetMapping("/{id}")
@@ -42,11 +80,127 @@ public class SessionController {
         }
     }
 
+    /**
+     * Without {@code cursor} nor {@code size}, returns the whole list as before for existing clients,
+     * served from {@link SessionListCache} with an ETag so that polling clients get a 304.
+     * With {@code stream=true} and no filter, streams the whole list straight from JDBC instead.
+     * Otherwise returns one keyset page and the cursor of the next one.
+     * Filtered lists and pages are summaries: participant counts without the participant ids.
+     * {@code from} and {@code to} (both inclusive days), {@code teacherId} and {@code available} (seats left)
+     * filter the list or the pages.
+     * {@code fields} (comma separated {@link SessionDto} fields) or {@code view=summary} select only those
+     * columns from the database and render only them, in the list or in the pages alike.
+     */
     @GetMapping()
-    public ResponseEntity<?> findAll() {
-        List<Session> sessions = this.sessionService.findAll();
+    public ResponseEntity<?> findAll(@RequestParam(value = "cursor", required = false) String cursor,
+                                     @RequestParam(value = "size", required = false) Integer size,
+                                     @RequestParam(value = "stream", defaultValue = "false") boolean stream,
+                                     @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                     @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                     @RequestParam(value = "teacherId", required = false) Long teacherId,
+                                     @RequestParam(value = "available", defaultValue = "false") boolean available,
+                                     @RequestParam(value = "fields", required = false) String fields,
+                                     @RequestParam(value = "view", required = false) String view,
+                                     @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        Specification<Session> filter = filter(from, to, teacherId, available);
+        List<String> selectedFields = selectedFields(fields, view);
+
+        if (selectedFields != null) {
+            return findFields(filter, cursor, size, selectedFields);
+        }
+
+        if (stream && filter == null) {
+            StreamingResponseBody body = this.sessionExporter::writeAll;
+
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+        }
+
+        if (cursor == null && size == null && filter != null) {
+            return ResponseEntity.ok().body(this.sessionMapper.toSummaryDto(this.sessionService.findAll(filter)));
+        }
+
+        if (cursor == null && size == null) {
+            SessionListCache.Body body = this.sessionListCache.get(() -> {
+                List<Session> sessions = this.sessionService.findAll();
 
-        return ResponseEntity.ok().body(this.sessionMapper.toDto(sessions));
+                return this.sessionMapper.toDto(sessions);
+            });
+
+            // Spring answers 304 itself when If-None-Match matches the ETag
+            boolean gzip = body.getGzip() != null && acceptEncoding != null && acceptEncoding.contains("gzip");
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                    .eTag(body.getEtag(gzip))
+                    .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                    .contentType(MediaType.APPLICATION_JSON);
+            if (gzip) {
+                return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(body.getGzip());
+            }
+            return response.body(body.getJson());
+        }
+
+        long[] position = cursor != null ? decodeCursor(cursor) : null;
+        Slice<Session> page = this.sessionService.findPage(filter,
+                position != null ? new Date(position[0]) : null,
+                position != null ? position[1] : null,
+                size != null ? size : DEFAULT_PAGE_SIZE);
+
+        List<Session> sessions = page.getContent();
+        Session last = sessions.isEmpty() ? null : sessions.get(sessions.size() - 1);
+        String nextCursor = page.hasNext() ? encodeCursor(last.getDate(), last.getId()) : null;
+
+        return ResponseEntity.ok().body(new SessionPageDto(this.sessionMapper.toSummaryDto(sessions), nextCursor));
+    }
+
+    private ResponseEntity<?> findFields(Specification<Session> filter, String cursor, Integer size, List<String> fields) {
+        boolean paged = cursor != null || size != null;
+        long[] position = cursor != null ? decodeCursor(cursor) : null;
+        Slice<Tuple> page = this.sessionService.findFields(filter,
+                position != null ? new Date(position[0]) : null,
+                position != null ? position[1] : null,
+                paged ? Integer.valueOf(size != null ? size : DEFAULT_PAGE_SIZE) : null,
+                fields);
+
+        List<Map<String, Object>> sessions = this.sessionMapper.toFields(page.getContent(), fields);
+        if (!paged) {
+            return ResponseEntity.ok().body(sessions);
+        }
+
+        List<Tuple> rows = page.getContent();
+        Tuple last = rows.isEmpty() ? null : rows.get(rows.size() - 1);
+        String nextCursor = page.hasNext() ? encodeCursor(last.get("date", Date.class), last.get("id", Long.class)) : null;
+
+        return ResponseEntity.ok().body(new SessionPageDto(sessions, nextCursor));
+    }
+
+    /**
+     * The next {@code limit} sessions from {@code from} (now by default), served from memory.
+     */
+    @GetMapping("/upcoming")
+    public ResponseEntity<?> findUpcoming(@RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                          @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        Date fromDate = from != null ? Date.from(from.atZone(ZoneId.systemDefault()).toInstant()) : new Date();
+
+        return ResponseEntity.ok().body(this.sessionService.findUpcoming(fromDate, limit));
+    }
+
+    /**
+     * Participant ids of a session in increasing order, {@code size} at a time.
+     */
+    @GetMapping("/{id}/participants")
+    public ResponseEntity<?> findParticipants(@PathVariable("id") String id,
+                                              @RequestParam(value = "cursor", required = false) String cursor,
+                                              @RequestParam(value = "size", defaultValue = "20") int size) {
+        try {
+            Slice<Long> page = this.sessionService.findParticipantIds(Long.valueOf(id),
+                    cursor != null ? Long.valueOf(cursor) : null, size);
+
+            List<Long> userIds = page.getContent();
+            String nextCursor = page.hasNext() ? String.valueOf(userIds.get(userIds.size() - 1)) : null;
+
+            return ResponseEntity.ok().body(new ParticipantPageDto(userIds, nextCursor));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     @PostMapping()
@@ -86,9 +240,16 @@ public class SessionController {
         }
     }
 
+    /**
+     * With the write-behind queue enabled the change is only queued and answered 202 with a
+     * {@code QUEUED} status; it is dropped at flush time if it no longer applies.
+     */
     @PostMapping("{id}/participate/{userId}")
     public ResponseEntity<?> participate(@PathVariable("id") String id, @PathVariable("userId") String userId) {
         try {
+            if (this.participationQueue.isEnabled()) {
+                return enqueue(Long.parseLong(id), Long.parseLong(userId), true);
+            }
             this.sessionService.participate(Long.parseLong(id), Long.parseLong(userId));
 
             return ResponseEntity.ok().build();
@@ -97,9 +258,24 @@ public class SessionController {
         }
     }
 
+    /**
+     * Enrols several users at once, see {@link SessionService#participateAll}.
+     */
+    @PostMapping("{id}/participate")
+    public ResponseEntity<?> participateAll(@PathVariable("id") String id, @RequestBody List<Long> userIds) {
+        try {
+            return ResponseEntity.ok().body(this.sessionService.participateAll(Long.parseLong(id), userIds));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @DeleteMapping("{id}/participate/{userId}")
     public ResponseEntity<?> noLongerParticipate(@PathVariable("id") String id, @PathVariable("userId") String userId) {
         try {
+            if (this.participationQueue.isEnabled()) {
+                return enqueue(Long.parseLong(id), Long.parseLong(userId), false);
+            }
             this.sessionService.noLongerParticipate(Long.parseLong(id), Long.parseLong(userId));
 
             return ResponseEntity.ok().build();
@@ -107,4 +283,86 @@ public class SessionController {
             return ResponseEntity.badRequest().build();
         }
     }
+
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<?> serviceUnavailable(ServiceUnavailableException e) {
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .build();
+    }
+
+    private ResponseEntity<?> enqueue(Long id, Long userId, boolean join) {
+        this.participationQueue.enqueue(id, userId, join);
+        return ResponseEntity.accepted().body(new EnrolmentResultDto(id, userId, EnrolmentResultDto.Status.QUEUED));
+    }
+
+    private static Specification<Session> filter(LocalDate from, LocalDate to, Long teacherId, boolean available) {
+        Specification<Session> filter = null;
+        if (from != null) {
+            filter = SessionSpecifications.dateFrom(startOfDay(from));
+        }
+        if (to != null) {
+            filter = Specification.where(filter).and(SessionSpecifications.dateBefore(startOfDay(to.plusDays(1))));
+        }
+        if (teacherId != null) {
+            filter = Specification.where(filter).and(SessionSpecifications.teacherId(teacherId));
+        }
+        if (available) {
+            filter = Specification.where(filter).and(SessionSpecifications.hasFreeSeat());
+        }
+        return filter;
+    }
+
+    private static Date startOfDay(LocalDate day) {
+        return Date.from(day.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    /**
+     * The fields asked for with {@code fields}, or else by {@code view}, in {@link SessionMapper#FIELDS} order
+     * and always with the id; {@code null} for the full representation.
+     */
+    private static List<String> selectedFields(String fields, String view) {
+        Set<String> requested = new HashSet<>();
+        if (fields != null) {
+            for (String field : fields.split(",")) {
+                if (!field.trim().isEmpty()) {
+                    requested.add(field.trim());
+                }
+            }
+            if (!SessionMapper.FIELDS.containsAll(requested)) {
+                throw new BadRequestException();
+            }
+        } else if ("summary".equals(view)) {
+            requested.addAll(SessionMapper.SUMMARY_FIELDS);
+        } else if (view != null && !"full".equals(view)) {
+            throw new BadRequestException();
+        }
+
+        if (requested.isEmpty()) {
+            return null;
+        }
+        requested.add("id");
+        return SessionMapper.FIELDS.stream().filter(requested::contains).collect(Collectors.toList());
+    }
+
+    private static String encodeCursor(Date date, Long id) {
+        String position = date.getTime() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the {@code {date in millis, id}} of the last session of the previous page.
+     */
+    private static long[] decodeCursor(String cursor) {
+        try {
+            String[] position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+            if (position.length != 2) {
+                throw new BadRequestException();
+            }
+            return new long[] {Long.parseLong(position[0]), Long.parseLong(position[1])};
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException();
+        }
+    }
 }
@@ -2,29 +2,29 @@ package com.openclassrooms.starterjwt.controllers;
 
 import com.openclassrooms.starterjwt.mapper.TeacherMapper;
 import com.openclassrooms.starterjwt.models.Teacher;
-import com.openclassrooms.starterjwt.services.TeacherService;
+import com.openclassrooms.starterjwt.services.TeacherDirectory;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import java.util.List;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
 @RequestMapping("/api/teacher")
 public class TeacherController {
     private final TeacherMapper teacherMapper;
-    private final TeacherService teacherService;
+    private final TeacherDirectory teacherDirectory;
 
 
-    public TeacherController(TeacherService teacherService,
+    public TeacherController(TeacherDirectory teacherDirectory,
                              TeacherMapper teacherMapper) {
         this.teacherMapper = teacherMapper;
-        this.teacherService = teacherService;
+        this.teacherDirectory = teacherDirectory;
     }
 
     @GetMapping("/{id}")
     public ResponseEntity<?> findById(@PathVariable("id") String id) {
         try {
-            Teacher teacher = this.teacherService.findById(Long.valueOf(id));
+            Teacher teacher = this.teacherDirectory.findById(Long.valueOf(id));
 
             if (teacher == null) {
                 return ResponseEntity.notFound().build();
@@ -36,10 +36,11 @@ public class TeacherController {
         }
     }
 
+    /**
+     * The list serialized with the current {@link TeacherDirectory} snapshot.
+     */
     @GetMapping()
     public ResponseEntity<?> findAll() {
-        List<Teacher> teachers = this.teacherService.findAll();
-
-        return ResponseEntity.ok().body(this.teacherMapper.toDto(teachers));
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(this.teacherDirectory.getJson());
     }
 }
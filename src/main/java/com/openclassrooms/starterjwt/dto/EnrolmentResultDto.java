@@ -0,0 +1,28 @@
+package com.openclassrooms.starterjwt.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of one (session, user) pair of a bulk enrolment, or {@code QUEUED} for a change accepted
+ * by the write-behind participation queue but not written yet.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EnrolmentResultDto {
+    private Long sessionId;
+
+    private Long userId;
+
+    private Status status;
+
+    public enum Status {
+        ENROLLED,
+        ALREADY_PARTICIPATING,
+        FULL,
+        NOT_FOUND,
+        QUEUED
+    }
+}
@@ -0,0 +1,19 @@
+package com.openclassrooms.starterjwt.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ParticipantPageDto {
+    private List<Long> items;
+
+    /**
+     * Position after the last participant, {@code null} on the last page.
+     */
+    private String nextCursor;
+}
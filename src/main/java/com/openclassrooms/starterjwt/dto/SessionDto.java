@@ -1,9 +1,11 @@
 package com.openclassrooms.starterjwt.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
@@ -31,8 +33,20 @@ public class SessionDto {
     @Size(max = 2500)
     private String description;
 
+    /**
+     * Left out of summaries, see {@code GET /api/session/{id}/participants}.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private List<Long> users;
 
+    private Integer participantCount;
+
+    /**
+     * Maximum number of participants, {@code null} for no limit.
+     */
+    @Min(1)
+    private Integer capacity;
+
     private LocalDateTime createdAt;
 
     private LocalDateTime updatedAt;
@@ -0,0 +1,22 @@
+package com.openclassrooms.starterjwt.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SessionPageDto {
+    /**
+     * {@link SessionDto}s, or maps of the requested fields only when {@code fields} or {@code view} is given.
+     */
+    private List<?> items;
+
+    /**
+     * Opaque position after the last item, {@code null} on the last page.
+     */
+    private String nextCursor;
+}
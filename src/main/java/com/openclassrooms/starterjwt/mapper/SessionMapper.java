@@ -3,16 +3,27 @@ package com.openclassrooms.starterjwt.mapper;
 import com.openclassrooms.starterjwt.dto.SessionDto;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.User;
-import com.openclassrooms.starterjwt.services.TeacherService;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.services.TeacherDirectory;
 import com.openclassrooms.starterjwt.services.UserService;
+import org.hibernate.Hibernate;
+import org.mapstruct.Context;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.Mappings;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import javax.persistence.Tuple;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -20,14 +31,30 @@ import java.util.stream.Collectors;
 @Mapper(componentModel = "spring", uses = {UserService.class}, imports = {Arrays.class, Collectors.class, Session.class, User.class, Collections.class, Optional.class})
 public abstract class SessionMapper implements EntityMapper<SessionDto, Session> {
 
+    /**
+     * Fields a client may pick with {@code fields}, in the order they are rendered.
+     */
+    public static final List<String> FIELDS = Collections.unmodifiableList(Arrays.asList(
+            "id", "name", "date", "teacher_id", "description", "users", "participantCount", "capacity", "createdAt", "updatedAt"));
+
+    /**
+     * Fields of {@code view=summary}: what list views show.
+     */
+    public static final List<String> SUMMARY_FIELDS = Collections.unmodifiableList(Arrays.asList(
+            "id", "name", "date", "teacher_id", "participantCount", "capacity"));
+
     @Autowired
-    TeacherService teacherService;
+    TeacherDirectory teacherDirectory;
     @Autowired
     UserService userService;
+    @Autowired
+    SessionRepository sessionRepository;
 
     @Mappings({
             @Mapping(source = "description", target = "description"),
-            @Mapping(target = "teacher", expression = "java(sessionDto.getTeacher_id() != null ? this.teacherService.findById(sessionDto.getTeacher_id()) : null)"),
+            @Mapping(target = "teacher", expression = "java(sessionDto.getTeacher_id() != null ? this.teacherDirectory.findById(sessionDto.getTeacher_id()) : null)"),
+            // counted by the database from PARTICIPATE, never taken from a client
+            @Mapping(target = "seatsTaken", ignore = true),
             @Mapping(target = "users", expression = "java(Optional.ofNullable(sessionDto.getUsers()).orElseGet(Collections::emptyList).stream().map(user_id -> { User user = this.userService.findById(user_id); if (user != null) { return user; } return null; }).collect(Collectors.toList()))"),
     })
     public abstract Session toEntity(SessionDto sessionDto);
@@ -36,7 +63,156 @@ public abstract class SessionMapper implements EntityMapper<SessionDto, Session>
     @Mappings({
             @Mapping(source = "description", target = "description"),
             @Mapping(source = "session.teacher.id", target = "teacher_id"),
-            @Mapping(target = "users", expression = "java(Optional.ofNullable(session.getUsers()).orElseGet(Collections::emptyList).stream().map(u -> u.getId()).collect(Collectors.toList()))"),
+            @Mapping(target = "users", expression = "java(participantIds.getOrDefault(session.getId(), Collections.emptyList()))"),
+            @Mapping(target = "participantCount", expression = "java(participantIds.getOrDefault(session.getId(), Collections.emptyList()).size())"),
     })
-    public abstract SessionDto toDto(Session session);
+    protected abstract SessionDto toDto(Session session, @Context Map<Long, List<Long>> participantIds);
+
+    @Mappings({
+            @Mapping(source = "description", target = "description"),
+            @Mapping(source = "session.teacher.id", target = "teacher_id"),
+            @Mapping(target = "users", ignore = true),
+            @Mapping(target = "participantCount", expression = "java(participantCounts.getOrDefault(session.getId(), 0))"),
+    })
+    protected abstract SessionDto toSummaryDto(Session session, @Context Map<Long, Integer> participantCounts);
+
+    @Override
+    public SessionDto toDto(Session session) {
+        if (session == null) {
+            return null;
+        }
+
+        return toDto(session, findParticipantIds(Collections.singletonList(session)));
+    }
+
+    /**
+     * Reads the participants of all the sessions with a single join table query.
+     */
+    @Override
+    public List<SessionDto> toDto(List<Session> sessions) {
+        if (sessions == null) {
+            return null;
+        }
+
+        Map<Long, List<Long>> participantIds = findParticipantIds(sessions);
+        return sessions.stream().map(session -> toDto(session, participantIds)).collect(Collectors.toList());
+    }
+
+    /**
+     * Same as {@link #toDto(List)} with the participant count instead of the participant ids,
+     * computed by a grouped query on PARTICIPATE.
+     */
+    public List<SessionDto> toSummaryDto(List<Session> sessions) {
+        if (sessions == null) {
+            return null;
+        }
+
+        Map<Long, Integer> participantCounts = countParticipants(sessions);
+        return sessions.stream().map(session -> toSummaryDto(session, participantCounts)).collect(Collectors.toList());
+    }
+
+    /**
+     * Renders projected rows with only the requested {@code fields}, in {@link #FIELDS} order.
+     * Participants are read with a single query on PARTICIPATE, and only when requested.
+     */
+    public List<Map<String, Object>> toFields(List<Tuple> rows, Collection<String> fields) {
+        List<Long> sessionIds = rows.stream().map(row -> row.get("id", Long.class)).collect(Collectors.toList());
+        Map<Long, List<Long>> participantIds = fields.contains("users") && !sessionIds.isEmpty()
+                ? findParticipantIdsBySessionId(sessionIds) : Collections.emptyMap();
+        Map<Long, Integer> participantCounts = fields.contains("participantCount") && !fields.contains("users") && !sessionIds.isEmpty()
+                ? countParticipantsBySessionId(sessionIds) : Collections.emptyMap();
+
+        List<Map<String, Object>> sessions = new ArrayList<>(rows.size());
+        for (Tuple row : rows) {
+            Long id = row.get("id", Long.class);
+            Map<String, Object> session = new LinkedHashMap<>();
+            for (String field : FIELDS) {
+                if (!fields.contains(field)) {
+                    continue;
+                }
+                switch (field) {
+                    case "users":
+                        session.put(field, participantIds.getOrDefault(id, Collections.emptyList()));
+                        break;
+                    case "participantCount":
+                        session.put(field, fields.contains("users")
+                                ? participantIds.getOrDefault(id, Collections.emptyList()).size()
+                                : participantCounts.getOrDefault(id, 0));
+                        break;
+                    default:
+                        session.put(field, row.get(field));
+                }
+            }
+            sessions.add(session);
+        }
+        return sessions;
+    }
+
+    private Map<Long, Integer> countParticipants(List<Session> sessions) {
+        Map<Long, Integer> participantCounts = new HashMap<>();
+        List<Long> lazySessionIds = new ArrayList<>();
+
+        for (Session session : sessions) {
+            if (session == null || session.getUsers() == null) {
+                continue;
+            }
+            if (Hibernate.isInitialized(session.getUsers())) {
+                participantCounts.put(session.getId(), session.getUsers().size());
+            } else if (session.getId() != null) {
+                lazySessionIds.add(session.getId());
+            }
+        }
+
+        if (!lazySessionIds.isEmpty()) {
+            participantCounts.putAll(countParticipantsBySessionId(lazySessionIds));
+        }
+
+        return participantCounts;
+    }
+
+    private Map<Long, Integer> countParticipantsBySessionId(Collection<Long> sessionIds) {
+        Map<Long, Integer> participantCounts = new HashMap<>();
+        for (Object[] row : this.sessionRepository.countParticipants(sessionIds)) {
+            participantCounts.put(((Number) row[0]).longValue(), ((Number) row[1]).intValue());
+        }
+        return participantCounts;
+    }
+
+    /**
+     * Participant ids by session id. Collections already in memory are used as is, uninitialized lazy
+     * ones are read from PARTICIPATE rather than loading the {@code User} entities.
+     */
+    private Map<Long, List<Long>> findParticipantIds(List<Session> sessions) {
+        Map<Long, List<Long>> participantIds = new HashMap<>();
+        List<Long> lazySessionIds = new ArrayList<>();
+
+        for (Session session : sessions) {
+            if (session == null || session.getUsers() == null) {
+                continue;
+            }
+            if (Hibernate.isInitialized(session.getUsers())) {
+                participantIds.put(session.getId(), session.getUsers().stream()
+                        .filter(Objects::nonNull)
+                        .map(User::getId)
+                        .collect(Collectors.toList()));
+            } else if (session.getId() != null) {
+                lazySessionIds.add(session.getId());
+            }
+        }
+
+        if (!lazySessionIds.isEmpty()) {
+            participantIds.putAll(findParticipantIdsBySessionId(lazySessionIds));
+        }
+
+        return participantIds;
+    }
+
+    private Map<Long, List<Long>> findParticipantIdsBySessionId(Collection<Long> sessionIds) {
+        Map<Long, List<Long>> participantIds = new HashMap<>();
+        for (Object[] row : this.sessionRepository.findParticipantIds(sessionIds)) {
+            participantIds.computeIfAbsent(((Number) row[0]).longValue(), id -> new ArrayList<>())
+                    .add(((Number) row[1]).longValue());
+        }
+        return participantIds;
+    }
 }
@@ -3,6 +3,9 @@ package com.openclassrooms.starterjwt.models;
 
 import lombok.*;
 import lombok.experimental.Accessors;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.UpdateTimestamp;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
@@ -16,7 +19,13 @@ import java.util.Date;
 import java.util.List;
 
 @Entity
-@Table(name = "SESSIONS")
+@Table(name = "SESSIONS", indexes = {
+        // InnoDB secondary indexes end with the primary key, so this one also serves (date, id) keyset seeks
+        @Index(name = "idx_sessions_date", columnList = "date"),
+        @Index(name = "idx_sessions_teacher_id", columnList = "teacher_id")
+})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "sessions")
 @EntityListeners(AuditingEntityListener.class)
 @Data
 @Accessors(chain = true)
@@ -27,7 +36,10 @@ import java.util.List;
 @ToString
 public class Session {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // reserved 50 at a time so that inserts can be batched, which IDENTITY prevents
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "sessions_id")
+    @TableGenerator(name = "sessions_id", table = "ID_GENERATORS", pkColumnName = "name", valueColumnName = "next_val",
+            pkColumnValue = "SESSIONS", allocationSize = 50)
     private Long id;
 
     @NotBlank
@@ -45,11 +57,28 @@ public class Session {
     @JoinColumn(name = "teacher_id", referencedColumnName = "id")
     private Teacher teacher;
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    /**
+     * Maximum number of participants, {@code null} for no limit.
+     */
+    private Integer capacity;
+
+    /**
+     * Number of PARTICIPATE rows, maintained by conditional updates in {@code SessionRepository}
+     * and never written from the entity, so that saving a session cannot overwrite a concurrent enrolment.
+     */
+    @Column(name = "seats_taken", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "int not null default 0")
+    private int seatsTaken;
+
+    @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(
             name = "PARTICIPATE",
             joinColumns = @JoinColumn( name = "session_id" ),
-            inverseJoinColumns = @JoinColumn( name = "user_id" ) )
+            inverseJoinColumns = @JoinColumn( name = "user_id" ),
+            uniqueConstraints = @UniqueConstraint(name = "uk_participate_session_user", columnNames = {"session_id", "user_id"}) )
+    @BatchSize(size = 50)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "sessions-users")
+    @ToString.Exclude
     private List<User> users;
 
     @CreatedDate
@@ -3,6 +3,7 @@ package com.openclassrooms.starterjwt.models;
 import lombok.*;
 import lombok.Builder;
 import lombok.experimental.Accessors;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.UpdateTimestamp;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
@@ -16,6 +17,8 @@ import java.time.LocalDateTime;
 @Table(name = "USERS", uniqueConstraints = {
     @UniqueConstraint(columnNames = "email")
 })
+// participants read back from the Session.users collection cache are loaded 50 at a time
+@BatchSize(size = 50)
 @Data
 @Accessors(chain = true)
 @EntityListeners(AuditingEntityListener.class)
@@ -27,7 +30,9 @@ import java.time.LocalDateTime;
 @ToString
 public class User {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.TABLE, generator = "users_id")
+  @TableGenerator(name = "users_id", table = "ID_GENERATORS", pkColumnName = "name", valueColumnName = "next_val",
+      pkColumnValue = "USERS", allocationSize = 50)
   private Long id;
 
   @NonNull
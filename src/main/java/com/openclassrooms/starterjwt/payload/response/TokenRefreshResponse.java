@@ -0,0 +1,17 @@
+package com.openclassrooms.starterjwt.payload.response;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class TokenRefreshResponse {
+  private String token;
+  private String refreshToken;
+  private String type = "Bearer";
+
+  public TokenRefreshResponse(String accessToken, String refreshToken) {
+    this.token = accessToken;
+    this.refreshToken = refreshToken;
+  }
+}
@@ -0,0 +1,91 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.function.Consumer;
+
+/**
+ * Reads every session with its participant ids in one forward-only query, handing each
+ * {@link SessionDto} over as soon as its rows have been read, without going through JPA.
+ */
+@Repository
+public class SessionExportRepository {
+    private static final String SELECT_SESSIONS_WITH_PARTICIPANTS =
+            "select s.id, s.name, s.date, s.teacher_id, s.description, s.capacity, s.created_at, s.updated_at, p.user_id"
+                    + " from SESSIONS s left join PARTICIPATE p on p.session_id = s.id"
+                    + " order by s.id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * The default fetch size of {@link Integer#MIN_VALUE} makes MySQL Connector/J stream the rows
+     * one by one instead of buffering the whole result set.
+     */
+    public SessionExportRepository(DataSource dataSource,
+                                   @Value("${oc.app.sessionExportFetchSize:-2147483648}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+    }
+
+    public void forEach(Consumer<SessionDto> consumer) {
+        SessionDto[] current = new SessionDto[1];
+
+        this.jdbcTemplate.query(SELECT_SESSIONS_WITH_PARTICIPANTS, (RowCallbackHandler) rs -> {
+            long id = rs.getLong("id");
+            if (current[0] == null || current[0].getId() != id) {
+                if (current[0] != null) {
+                    emit(current[0], consumer);
+                }
+                current[0] = toDto(rs, id);
+            }
+
+            long userId = rs.getLong("user_id");
+            if (!rs.wasNull()) {
+                current[0].getUsers().add(userId);
+            }
+        });
+
+        if (current[0] != null) {
+            emit(current[0], consumer);
+        }
+    }
+
+    private static void emit(SessionDto session, Consumer<SessionDto> consumer) {
+        session.setParticipantCount(session.getUsers().size());
+        consumer.accept(session);
+    }
+
+    private static SessionDto toDto(ResultSet rs, long id) throws SQLException {
+        Timestamp date = rs.getTimestamp("date");
+        long teacherId = rs.getLong("teacher_id");
+        boolean noTeacher = rs.wasNull();
+        int capacity = rs.getInt("capacity");
+        boolean noCapacity = rs.wasNull();
+
+        return new SessionDto(id,
+                rs.getString("name"),
+                date != null ? new Date(date.getTime()) : null,
+                noTeacher ? null : teacherId,
+                rs.getString("description"),
+                new ArrayList<>(),
+                null,
+                noCapacity ? null : capacity,
+                toLocalDateTime(rs.getTimestamp("created_at")),
+                toLocalDateTime(rs.getTimestamp("updated_at")));
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+}
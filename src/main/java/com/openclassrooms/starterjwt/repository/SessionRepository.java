@@ -1,9 +1,119 @@
 package com.openclassrooms.starterjwt.repository;
 
 import com.openclassrooms.starterjwt.models.Session;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
 
 @Repository
-public interface SessionRepository  extends JpaRepository<Session, Long> {
+public interface SessionRepository  extends JpaRepository<Session, Long>, JpaSpecificationExecutor<Session>, SessionRepositoryCustom {
+    @Override
+    @QueryHints(@QueryHint(name = org.hibernate.annotations.QueryHints.CACHEABLE, value = "true"))
+    List<Session> findAll();
+
+    /**
+     * Adds one PARTICIPATE row. Returns 0 when the user already participates: the unique
+     * (session_id, user_id) key makes {@code insert ignore} skip the row.
+     * The query space limits the cache invalidation to the participant collections.
+     */
+    @Transactional
+    @Modifying
+    @QueryHints(@QueryHint(name = "org.hibernate.query.native.spaces", value = "PARTICIPATE"))
+    @Query(value = "insert ignore into PARTICIPATE (session_id, user_id) values (:sessionId, :userId)", nativeQuery = true)
+    int addParticipant(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    /**
+     * Deletes one PARTICIPATE row. Returns 0 when the user does not participate.
+     */
+    @Transactional
+    @Modifying
+    @QueryHints(@QueryHint(name = "org.hibernate.query.native.spaces", value = "PARTICIPATE"))
+    @Query(value = "delete from PARTICIPATE where session_id = :sessionId and user_id = :userId", nativeQuery = true)
+    int removeParticipant(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    /**
+     * Takes one seat in a single conditional statement, so concurrent enrolments serialize on the row
+     * lock instead of overwriting each other. Returns 0 when the session is full.
+     */
+    @Transactional
+    @Modifying
+    @QueryHints(@QueryHint(name = "org.hibernate.query.native.spaces", value = "SESSIONS"))
+    @Query(value = "update SESSIONS set seats_taken = seats_taken + 1 where id = :sessionId and (capacity is null or seats_taken < capacity)", nativeQuery = true)
+    int takeSeat(@Param("sessionId") Long sessionId);
+
+    @Transactional
+    @Modifying
+    @QueryHints(@QueryHint(name = "org.hibernate.query.native.spaces", value = "SESSIONS"))
+    @Query(value = "update SESSIONS set seats_taken = seats_taken - 1 where id = :sessionId and seats_taken > 0", nativeQuery = true)
+    int releaseSeat(@Param("sessionId") Long sessionId);
+
+    /**
+     * Releases the seats of a user about to be deleted along with their PARTICIPATE rows.
+     */
+    @Transactional
+    @Modifying
+    @QueryHints(@QueryHint(name = "org.hibernate.query.native.spaces", value = "SESSIONS"))
+    @Query(value = "update SESSIONS set seats_taken = seats_taken - 1 where seats_taken > 0 and id in (select session_id from PARTICIPATE where user_id = :userId)", nativeQuery = true)
+    int releaseSeatsOf(@Param("userId") Long userId);
+
+    /**
+     * Deletes every PARTICIPATE row of a user about to be deleted, after {@link #releaseSeatsOf}.
+     */
+    @Transactional
+    @Modifying
+    @QueryHints(@QueryHint(name = "org.hibernate.query.native.spaces", value = "PARTICIPATE"))
+    @Query(value = "delete from PARTICIPATE where user_id = :userId", nativeQuery = true)
+    int removeParticipations(@Param("userId") Long userId);
+
+    /**
+     * Resets the seat counter from PARTICIPATE, after the participants were replaced as a whole.
+     */
+    @Transactional
+    @Modifying
+    @QueryHints(@QueryHint(name = "org.hibernate.query.native.spaces", value = "SESSIONS"))
+    @Query(value = "update SESSIONS set seats_taken = (select count(*) from PARTICIPATE where session_id = :sessionId) where id = :sessionId", nativeQuery = true)
+    int recountSeats(@Param("sessionId") Long sessionId);
+
+    /**
+     * Locks the sessions, in id order so that concurrent bulk enrolments cannot deadlock.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from Session s where s.id in :ids order by s.id")
+    List<Session> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+
+    /**
+     * {@code [session_id, user_id]} rows of the join table, without loading the users themselves.
+     */
+    @Query(value = "select session_id, user_id from PARTICIPATE where session_id in (:sessionIds)", nativeQuery = true)
+    List<Object[]> findParticipantIds(@Param("sessionIds") Collection<Long> sessionIds);
+
+    /**
+     * {@code [session_id, user_id]} rows among the given sessions and users.
+     */
+    @Query(value = "select session_id, user_id from PARTICIPATE where session_id in (:sessionIds) and user_id in (:userIds)", nativeQuery = true)
+    List<Object[]> findParticipations(@Param("sessionIds") Collection<Long> sessionIds, @Param("userIds") Collection<Long> userIds);
+
+    /**
+     * {@code [session_id, count]} rows for the sessions that have participants.
+     */
+    @Query(value = "select session_id, count(*) from PARTICIPATE where session_id in (:sessionIds) group by session_id", nativeQuery = true)
+    List<Object[]> countParticipants(@Param("sessionIds") Collection<Long> sessionIds);
+
+    /**
+     * Participant ids of a session in increasing order, starting after {@code afterUserId}.
+     */
+    @Query(value = "select user_id from PARTICIPATE where session_id = :sessionId and user_id > :afterUserId order by user_id", nativeQuery = true)
+    List<Number> findParticipantIdsAfter(@Param("sessionId") Long sessionId, @Param("afterUserId") Long afterUserId, Pageable pageable);
 }
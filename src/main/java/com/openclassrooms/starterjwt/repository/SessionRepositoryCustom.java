@@ -0,0 +1,38 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.models.Session;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
+
+import javax.persistence.Tuple;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface SessionRepositoryCustom {
+    /**
+     * Sessions matching {@code specification} ordered by date then id, at most {@code size} of them,
+     * without the count query a {@code Page} would need.
+     */
+    Slice<Session> findSlice(Specification<Session> specification, int size);
+
+    /**
+     * Same as {@link #findSlice} but selecting only the given columns, named as in {@code SessionDto}
+     * ({@code name}, {@code date}, {@code teacher_id}, {@code description}, {@code capacity}, {@code createdAt},
+     * {@code updatedAt}).
+     * Tuples always carry {@code id} and {@code date}. A {@code null} size returns every matching row.
+     */
+    Slice<Tuple> findColumns(Specification<Session> specification, Collection<String> columns, Integer size);
+
+    /**
+     * Inserts the PARTICIPATE rows and takes the matching seats, each in a single JDBC batch.
+     * The caller must hold the locks of the sessions and have checked their capacity.
+     */
+    void enrol(Map<Long, List<Long>> userIdsBySessionId);
+
+    /**
+     * Deletes the PARTICIPATE rows and releases the matching seats, each in a single JDBC batch.
+     * The caller must hold the locks of the sessions and have checked the users participate.
+     */
+    void unenrol(Map<Long, List<Long>> userIdsBySessionId);
+}
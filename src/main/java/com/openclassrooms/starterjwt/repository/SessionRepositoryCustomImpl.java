@@ -0,0 +1,164 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.models.Session;
+import org.hibernate.Cache;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class SessionRepositoryCustomImpl implements SessionRepositoryCustom {
+    private static final String PARTICIPANTS_ROLE = Session.class.getName() + ".users";
+
+    private static final String INSERT_PARTICIPANT = "insert into PARTICIPATE (session_id, user_id) values (?, ?)";
+
+    private static final String TAKE_SEATS = "update SESSIONS set seats_taken = seats_taken + ? where id = ?";
+
+    private static final String DELETE_PARTICIPANT = "delete from PARTICIPATE where session_id = ? and user_id = ?";
+
+    private static final String RELEASE_SEATS = "update SESSIONS set seats_taken = greatest(seats_taken - ?, 0) where id = ?";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Slice<Session> findSlice(Specification<Session> specification, int size) {
+        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
+        CriteriaQuery<Session> query = builder.createQuery(Session.class);
+        Root<Session> session = query.from(Session.class);
+
+        query.select(session);
+        return slice(filterAndOrder(query, session, specification, builder), size);
+    }
+
+    @Override
+    public Slice<Tuple> findColumns(Specification<Session> specification, Collection<String> columns, Integer size) {
+        CriteriaBuilder builder = this.entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = builder.createTupleQuery();
+        Root<Session> session = query.from(Session.class);
+
+        List<Selection<?>> selections = new ArrayList<>();
+        selections.add(session.get("id").alias("id"));
+        selections.add(session.get("date").alias("date"));
+        for (String column : columns) {
+            if (!column.equals("id") && !column.equals("date")) {
+                selections.add(column(session, column).alias(column));
+            }
+        }
+        query.multiselect(selections);
+
+        TypedQuery<Tuple> typedQuery = filterAndOrder(query, session, specification, builder);
+        if (size == null) {
+            return new SliceImpl<>(typedQuery.getResultList());
+        }
+        return slice(typedQuery, size);
+    }
+
+    @Override
+    public void enrol(Map<Long, List<Long>> userIdsBySessionId) {
+        writeParticipations(INSERT_PARTICIPANT, TAKE_SEATS, userIdsBySessionId);
+    }
+
+    @Override
+    public void unenrol(Map<Long, List<Long>> userIdsBySessionId) {
+        writeParticipations(DELETE_PARTICIPANT, RELEASE_SEATS, userIdsBySessionId);
+    }
+
+    private void writeParticipations(String participantSql, String seatsSql, Map<Long, List<Long>> userIdsBySessionId) {
+        this.entityManager.unwrap(org.hibernate.Session.class).doWork(connection -> {
+            try (PreparedStatement participants = connection.prepareStatement(participantSql);
+                 PreparedStatement seats = connection.prepareStatement(seatsSql)) {
+                for (Map.Entry<Long, List<Long>> entry : userIdsBySessionId.entrySet()) {
+                    for (Long userId : entry.getValue()) {
+                        participants.setLong(1, entry.getKey());
+                        participants.setLong(2, userId);
+                        participants.addBatch();
+                    }
+                    seats.setInt(1, entry.getValue().size());
+                    seats.setLong(2, entry.getKey());
+                    seats.addBatch();
+                }
+                participants.executeBatch();
+                seats.executeBatch();
+            }
+        });
+
+        // plain JDBC, so the cached sessions are evicted by hand, again once committed in case
+        // a concurrent read cached the previous state in between
+        Set<Long> sessionIds = new HashSet<>(userIdsBySessionId.keySet());
+        evictSessions(sessionIds);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evictSessions(sessionIds);
+                }
+            });
+        }
+    }
+
+    private void evictSessions(Collection<Long> sessionIds) {
+        Cache cache = this.entityManager.getEntityManagerFactory().getCache().unwrap(Cache.class);
+        for (Long sessionId : sessionIds) {
+            cache.evictEntityData(Session.class, sessionId);
+            cache.evictCollectionData(PARTICIPANTS_ROLE, sessionId);
+        }
+    }
+
+    private static Path<?> column(Root<Session> session, String column) {
+        switch (column) {
+            case "teacher_id":
+                // compares the foreign key, no join on TEACHERS
+                return session.get("teacher").get("id");
+            case "name":
+            case "description":
+            case "capacity":
+            case "createdAt":
+            case "updatedAt":
+                return session.get(column);
+            default:
+                throw new IllegalArgumentException("Unknown session column: " + column);
+        }
+    }
+
+    private <T> TypedQuery<T> filterAndOrder(CriteriaQuery<T> query, Root<Session> session,
+                                             Specification<Session> specification, CriteriaBuilder builder) {
+        Predicate predicate = specification != null ? specification.toPredicate(session, query, builder) : null;
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(builder.asc(session.get("date")), builder.asc(session.get("id")));
+
+        return this.entityManager.createQuery(query);
+    }
+
+    private static <T> Slice<T> slice(TypedQuery<T> query, int size) {
+        // one extra row tells whether there is a next slice
+        List<T> rows = query.setMaxResults(size + 1).getResultList();
+
+        boolean hasNext = rows.size() > size;
+        Pageable pageable = PageRequest.of(0, size);
+        return new SliceImpl<>(hasNext ? rows.subList(0, size) : rows, pageable, hasNext);
+    }
+}
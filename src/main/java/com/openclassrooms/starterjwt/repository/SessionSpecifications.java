@@ -0,0 +1,45 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.models.Session;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Date;
+
+/**
+ * Filters on {@link Session}, each one backed by an index of SESSIONS except {@link #hasFreeSeat()}.
+ */
+public final class SessionSpecifications {
+
+    private SessionSpecifications() {
+    }
+
+    public static Specification<Session> dateFrom(Date from) {
+        return (session, query, builder) -> builder.greaterThanOrEqualTo(session.get("date"), from);
+    }
+
+    public static Specification<Session> dateBefore(Date before) {
+        return (session, query, builder) -> builder.lessThan(session.get("date"), before);
+    }
+
+    public static Specification<Session> teacherId(Long teacherId) {
+        return (session, query, builder) -> builder.equal(session.get("teacher").get("id"), teacherId);
+    }
+
+    /**
+     * Sessions without capacity or with seats left. Evaluated on the rows the other filters select.
+     */
+    public static Specification<Session> hasFreeSeat() {
+        return (session, query, builder) -> builder.or(
+                builder.isNull(session.get("capacity")),
+                builder.lessThan(session.<Integer>get("seatsTaken"), session.<Integer>get("capacity")));
+    }
+
+    /**
+     * Keyset position: sessions strictly after {@code (date, id)} in date then id order.
+     */
+    public static Specification<Session> after(Date date, Long id) {
+        return (session, query, builder) -> builder.or(
+                builder.greaterThan(session.get("date"), date),
+                builder.and(builder.equal(session.get("date"), date), builder.greaterThan(session.get("id"), id)));
+    }
+}
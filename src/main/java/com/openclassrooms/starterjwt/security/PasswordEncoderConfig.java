@@ -0,0 +1,46 @@
+package com.openclassrooms.starterjwt.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.openclassrooms.starterjwt.security.crypto.BoundedPasswordEncoder;
+import com.openclassrooms.starterjwt.security.crypto.CalibratedBCryptPasswordEncoder;
+
+/**
+ * Kept apart from {@link WebSecurityConfig}: the encoder is a meter binder, and binding it while the
+ * security configuration is still being created would make the meter registry depend on it.
+ */
+@Configuration
+public class PasswordEncoderConfig {
+  @Value("${oc.app.bcrypt.strength:10}")
+  private int bcryptStrength;
+
+  @Value("${oc.app.bcrypt.targetMs:0}")
+  private long bcryptTargetMs;
+
+  @Value("${oc.app.bcrypt.minStrength:8}")
+  private int bcryptMinStrength;
+
+  @Value("${oc.app.bcrypt.maxStrength:14}")
+  private int bcryptMaxStrength;
+
+  @Value("${oc.app.bcrypt.poolSize:0}")
+  private int bcryptPoolSize;
+
+  @Value("${oc.app.bcrypt.queueCapacity:64}")
+  private int bcryptQueueCapacity;
+
+  @Value("${oc.app.bcrypt.retryAfterSeconds:1}")
+  private long bcryptRetryAfterSeconds;
+
+  @Bean
+  public BoundedPasswordEncoder passwordEncoder() {
+    int strength = bcryptTargetMs > 0
+        ? CalibratedBCryptPasswordEncoder.calibrate(bcryptTargetMs, bcryptMinStrength, bcryptMaxStrength)
+        : bcryptStrength;
+    int poolSize = bcryptPoolSize > 0 ? bcryptPoolSize : Runtime.getRuntime().availableProcessors();
+    return new BoundedPasswordEncoder(new CalibratedBCryptPasswordEncoder(strength),
+        poolSize, bcryptQueueCapacity, bcryptRetryAfterSeconds);
+  }
+}
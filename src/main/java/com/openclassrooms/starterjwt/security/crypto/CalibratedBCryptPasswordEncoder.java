@@ -0,0 +1,70 @@
+package com.openclassrooms.starterjwt.security.crypto;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * BCrypt encoder that asks for a rehash whenever a stored hash uses a different cost than the
+ * configured one, in either direction, so a recalibrated strength converges on the next logins.
+ */
+public class CalibratedBCryptPasswordEncoder extends BCryptPasswordEncoder {
+  private static final Logger logger = LoggerFactory.getLogger(CalibratedBCryptPasswordEncoder.class);
+
+  private static final Pattern BCRYPT_PATTERN = Pattern.compile("\\A\\$2(a|y|b)?\\$(\\d\\d)\\$[./0-9A-Za-z]{53}");
+
+  private static final int SAMPLES = 3;
+
+  private final int strength;
+
+  public CalibratedBCryptPasswordEncoder(int strength) {
+    super(strength);
+    this.strength = strength;
+  }
+
+  public int getStrength() {
+    return strength;
+  }
+
+  @Override
+  public boolean upgradeEncoding(String encodedPassword) {
+    if (encodedPassword == null) {
+      return false;
+    }
+
+    Matcher matcher = BCRYPT_PATTERN.matcher(encodedPassword);
+    return matcher.matches() && Integer.parseInt(matcher.group(2)) != strength;
+  }
+
+  /**
+   * Picks the highest strength in {@code [minStrength, maxStrength]} whose hashing time on this
+   * host stays within {@code targetMs}. The cost is timed at {@code minStrength} and extrapolated,
+   * each extra round doubling the work.
+   */
+  public static int calibrate(long targetMs, int minStrength, int maxStrength) {
+    BCryptPasswordEncoder probe = new BCryptPasswordEncoder(minStrength);
+    probe.encode("calibration");
+
+    long bestNanos = Long.MAX_VALUE;
+    for (int i = 0; i < SAMPLES; i++) {
+      long start = System.nanoTime();
+      probe.encode("calibration");
+      bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+    }
+
+    long targetNanos = targetMs * 1_000_000L;
+    int strength = minStrength;
+    long estimatedNanos = bestNanos;
+    while (strength < maxStrength && estimatedNanos * 2 <= targetNanos) {
+      estimatedNanos *= 2;
+      strength++;
+    }
+
+    logger.info("BCrypt strength calibrated to {} (~{} ms per hash, target {} ms)",
+        strength, estimatedNanos / 1_000_000L, targetMs);
+    return strength;
+  }
+}
@@ -10,6 +10,7 @@ import javax.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -17,15 +18,31 @@ import org.springframework.security.web.authentication.WebAuthenticationDetailsS
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
+import com.openclassrooms.starterjwt.security.services.UserDenyList;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
 
+import io.jsonwebtoken.Claims;
+
 public class AuthTokenFilter extends OncePerRequestFilter {
   @Autowired
   private JwtUtils jwtUtils;
 
+  @Autowired
+  private VerifiedTokenCache verifiedTokenCache;
+
   @Autowired
   private UserDetailsServiceImpl userDetailsService;
 
+  @Autowired
+  private UserDenyList userDenyList;
+
+  @Autowired
+  private RevokedTokenRegistry revokedTokenRegistry;
+
+  @Value("${oc.app.jwtClaimsOnly:false}")
+  private boolean claimsOnly;
+
   private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
 
   @Override
@@ -33,10 +50,9 @@ public class AuthTokenFilter extends OncePerRequestFilter {
       throws ServletException, IOException {
     try {
       String jwt = parseJwt(request);
-      if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-        String username = jwtUtils.getUserNameFromJwtToken(jwt);
-
-        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+      Claims claims = jwt != null ? verifyJwt(jwt) : null;
+      UserDetails userDetails = claims != null ? loadUserDetails(claims) : null;
+      if (userDetails != null) {
         UsernamePasswordAuthenticationToken authentication =
             new UsernamePasswordAuthenticationToken(
                 userDetails,
@@ -53,6 +69,33 @@ public class AuthTokenFilter extends OncePerRequestFilter {
     filterChain.doFilter(request, response);
   }
 
+  private UserDetails loadUserDetails(Claims claims) {
+    if (claimsOnly) {
+      UserDetailsImpl userDetails = jwtUtils.getUserDetailsFromJwtClaims(claims);
+      if (userDetails != null) {
+        return userDenyList.isDenied(userDetails.getId()) ? null : userDetails;
+      }
+    }
+
+    return userDetailsService.loadUserByUsername(claims.getSubject());
+  }
+
+  private Claims verifyJwt(String jwt) {
+    Claims claims = verifiedTokenCache.get(jwt);
+    if (claims == null) {
+      claims = jwtUtils.parseJwtClaims(jwt);
+      if (claims != null) {
+        verifiedTokenCache.put(jwt, claims);
+      }
+    }
+
+    if (claims != null && claims.getId() != null && revokedTokenRegistry.isRevoked(claims.getId())) {
+      return null;
+    }
+
+    return claims;
+  }
+
   private String parseJwt(HttpServletRequest request) {
     String headerAuth = request.getHeader("Authorization");
 
@@ -0,0 +1,86 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.MessageDigest;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.impl.DefaultJwtBuilder;
+import io.jsonwebtoken.impl.DefaultJwtParser;
+import io.jsonwebtoken.impl.TextCodec;
+import io.jsonwebtoken.impl.crypto.JwtSignatureValidator;
+import io.jsonwebtoken.impl.crypto.JwtSigner;
+
+/**
+ * HS512 signer and verifier built once from the configured secret. The key is derived a single
+ * time and every thread reuses its own initialised {@link Mac}, instead of jjwt decoding the secret
+ * and looking up a new {@code Mac} for each token.
+ */
+class HmacJwtSigner implements JwtSigner, JwtSignatureValidator {
+  static final SignatureAlgorithm ALGORITHM = SignatureAlgorithm.HS512;
+
+  private final SecretKey key;
+
+  private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(this::newMac);
+
+  private final JwtParser parser;
+
+  HmacJwtSigner(String base64EncodedSecret) {
+    // same decoding jjwt applies to a String secret, so tokens issued before stay valid
+    this.key = new SecretKeySpec(TextCodec.BASE64.decode(base64EncodedSecret), ALGORITHM.getJcaName());
+    this.parser = new DefaultJwtParser() {
+      @Override
+      protected JwtSignatureValidator createSignatureValidator(SignatureAlgorithm alg, Key key) {
+        return alg == ALGORITHM ? HmacJwtSigner.this : super.createSignatureValidator(alg, key);
+      }
+    }.setSigningKey(key);
+    newMac();
+  }
+
+  JwtBuilder builder() {
+    return new DefaultJwtBuilder() {
+      @Override
+      protected JwtSigner createSigner(SignatureAlgorithm alg, Key key) {
+        return alg == ALGORITHM ? HmacJwtSigner.this : super.createSigner(alg, key);
+      }
+    }.signWith(ALGORITHM, key);
+  }
+
+  /**
+   * The parser holds no per-call state once configured, so a single instance is shared.
+   */
+  JwtParser parser() {
+    return parser;
+  }
+
+  @Override
+  public String sign(String jwtWithoutSignature) {
+    return TextCodec.BASE64URL.encode(mac(jwtWithoutSignature));
+  }
+
+  @Override
+  public boolean isValid(String jwtWithoutSignature, String base64UrlEncodedSignature) {
+    return MessageDigest.isEqual(mac(jwtWithoutSignature), TextCodec.BASE64URL.decode(base64UrlEncodedSignature));
+  }
+
+  private byte[] mac(String jwtWithoutSignature) {
+    return macs.get().doFinal(jwtWithoutSignature.getBytes(StandardCharsets.US_ASCII));
+  }
+
+  private Mac newMac() {
+    try {
+      Mac mac = Mac.getInstance(ALGORITHM.getJcaName());
+      mac.init(key);
+      return mac;
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("Unable to initialize " + ALGORITHM.getJcaName(), e);
+    }
+  }
+}
@@ -1,6 +1,9 @@
 package com.openclassrooms.starterjwt.security.jwt;
 
 import java.util.Date;
+import java.util.UUID;
+
+import javax.annotation.PostConstruct;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,32 +19,77 @@ import io.jsonwebtoken.*;
 public class JwtUtils {
   private static final Logger logger = LoggerFactory.getLogger(JwtUtils.class);
 
+  private static final String CLAIM_ID = "id";
+  private static final String CLAIM_FIRST_NAME = "firstName";
+  private static final String CLAIM_LAST_NAME = "lastName";
+  private static final String CLAIM_ADMIN = "admin";
+
   @Value("${oc.app.jwtSecret}")
   private String jwtSecret;
 
   @Value("${oc.app.jwtExpirationMs}")
   private int jwtExpirationMs;
 
-  public String generateJwtToken(Authentication authentication) {
+  private HmacJwtSigner signer;
 
-    UserDetailsImpl userPrincipal = (UserDetailsImpl) authentication.getPrincipal();
+  @PostConstruct
+  public void init() {
+    signer = new HmacJwtSigner(jwtSecret);
+  }
+
+  public String generateJwtToken(Authentication authentication) {
+    return generateJwtToken((UserDetailsImpl) authentication.getPrincipal());
+  }
 
-    return Jwts.builder()
+  /**
+   * Every token carries a random {@code jti} so that it can be revoked individually before it expires.
+   */
+  public String generateJwtToken(UserDetailsImpl userPrincipal) {
+    return signer.builder()
+        .setId(UUID.randomUUID().toString())
         .setSubject((userPrincipal.getUsername()))
+        .claim(CLAIM_ID, userPrincipal.getId())
+        .claim(CLAIM_FIRST_NAME, userPrincipal.getFirstName())
+        .claim(CLAIM_LAST_NAME, userPrincipal.getLastName())
+        .claim(CLAIM_ADMIN, userPrincipal.getAdmin())
         .setIssuedAt(new Date())
         .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
-        .signWith(SignatureAlgorithm.HS512, jwtSecret)
         .compact();
   }
 
   public String getUserNameFromJwtToken(String token) {
-    return Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(token).getBody().getSubject();
+    return signer.parser().parseClaimsJws(token).getBody().getSubject();
+  }
+
+  /**
+   * Rebuilds the principal from the claims embedded at login, returns {@code null} for tokens issued without them.
+   */
+  public UserDetailsImpl getUserDetailsFromJwtClaims(Claims claims) {
+    Object id = claims.get(CLAIM_ID);
+    if (!(id instanceof Number)) {
+      return null;
+    }
+
+    return UserDetailsImpl
+        .builder()
+        .id(((Number) id).longValue())
+        .username(claims.getSubject())
+        .firstName(claims.get(CLAIM_FIRST_NAME, String.class))
+        .lastName(claims.get(CLAIM_LAST_NAME, String.class))
+        .admin(claims.get(CLAIM_ADMIN, Boolean.class))
+        .build();
   }
 
   public boolean validateJwtToken(String authToken) {
+    return parseJwtClaims(authToken) != null;
+  }
+
+  /**
+   * Verifies signature and expiration in a single parse, returns {@code null} for an invalid token.
+   */
+  public Claims parseJwtClaims(String authToken) {
     try {
-      Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(authToken);
-      return true;
+      return signer.parser().parseClaimsJws(authToken).getBody();
     } catch (SignatureException e) {
       logger.error("Invalid JWT signature: {}", e.getMessage());
     } catch (MalformedJwtException e) {
@@ -54,6 +102,6 @@ public class JwtUtils {
       logger.error("JWT claims string is empty: {}", e.getMessage());
     }
 
-    return false;
+    return null;
   }
 }
@@ -0,0 +1,115 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Ids ({@code jti}) of access tokens revoked before their expiration. A Bloom filter answers the
+ * common "not revoked" case without touching the exact map, which only confirms positives. Entries
+ * are purged once the token would have expired anyway, and the filter is then rebuilt since Bloom
+ * filters cannot forget.
+ */
+@Component
+public class RevokedTokenRegistry {
+  private static final double FALSE_POSITIVE_RATE = 0.01;
+
+  private final Map<String, Long> expirationByTokenId = new ConcurrentHashMap<>();
+
+  private final int expectedTokens;
+
+  private volatile BloomFilter filter;
+
+  public RevokedTokenRegistry(@Value("${oc.app.revocation.expectedTokens:1000000}") int expectedTokens) {
+    this.expectedTokens = expectedTokens;
+    this.filter = new BloomFilter(expectedTokens, FALSE_POSITIVE_RATE);
+  }
+
+  public synchronized void revoke(String tokenId, Date expiration) {
+    expirationByTokenId.put(tokenId, expiration.getTime());
+    filter.put(tokenId);
+  }
+
+  public boolean isRevoked(String tokenId) {
+    if (!filter.mightContain(tokenId)) {
+      return false;
+    }
+
+    Long expiration = expirationByTokenId.get(tokenId);
+    return expiration != null && expiration > System.currentTimeMillis();
+  }
+
+  public int size() {
+    return expirationByTokenId.size();
+  }
+
+  @Scheduled(fixedDelayString = "${oc.app.revocation.purgeMs:60000}")
+  public synchronized void purgeExpired() {
+    long now = System.currentTimeMillis();
+    if (expirationByTokenId.values().removeIf(expiration -> expiration <= now)) {
+      BloomFilter rebuilt = new BloomFilter(Math.max(expectedTokens, 2 * expirationByTokenId.size()), FALSE_POSITIVE_RATE);
+      expirationByTokenId.keySet().forEach(rebuilt::put);
+      filter = rebuilt;
+    }
+  }
+
+  static final class BloomFilter {
+    private final AtomicLongArray words;
+
+    private final int bitCount;
+
+    private final int hashCount;
+
+    BloomFilter(int expectedInsertions, double falsePositiveRate) {
+      double ln2 = Math.log(2);
+      long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (ln2 * ln2));
+      this.bitCount = (int) Math.min(Integer.MAX_VALUE - 63L, Math.max(64L, bits));
+      this.hashCount = Math.max(1, (int) Math.round((double) bitCount / Math.max(1, expectedInsertions) * ln2));
+      this.words = new AtomicLongArray((bitCount + 63) >>> 6);
+    }
+
+    void put(String key) {
+      long hash = hash64(key);
+      for (int i = 1; i <= hashCount; i++) {
+        int bit = bitIndex(hash, i);
+        long mask = 1L << bit;
+        words.getAndAccumulate(bit >>> 6, mask, (word, m) -> word | m);
+      }
+    }
+
+    boolean mightContain(String key) {
+      long hash = hash64(key);
+      for (int i = 1; i <= hashCount; i++) {
+        int bit = bitIndex(hash, i);
+        if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private int bitIndex(long hash, int i) {
+      int combined = (int) hash + i * (int) (hash >>> 32);
+      return (combined & Integer.MAX_VALUE) % bitCount;
+    }
+
+    private static long hash64(String key) {
+      long hash = 0xcbf29ce484222325L;
+      for (int i = 0; i < key.length(); i++) {
+        hash ^= key.charAt(i);
+        hash *= 0x100000001b3L;
+      }
+      hash ^= hash >>> 33;
+      hash *= 0xff51afd7ed558ccdL;
+      hash ^= hash >>> 33;
+      hash *= 0xc4ceb9fe1a85ec53L;
+      hash ^= hash >>> 33;
+      return hash;
+    }
+  }
+}
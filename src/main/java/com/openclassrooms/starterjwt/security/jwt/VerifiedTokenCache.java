@@ -0,0 +1,78 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import io.jsonwebtoken.Claims;
+
+/**
+ * Claims of tokens whose signature was already verified, keyed by the SHA-256 digest of the token
+ * so raw bearer tokens are never retained. Entries expire together with the token they belong to.
+ */
+@Component
+public class VerifiedTokenCache {
+  private final Cache<String, Claims> cache;
+
+  public VerifiedTokenCache(@Value("${oc.app.jwtCacheSize:10000}") long maximumSize) {
+    this.cache = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfter(new Expiry<String, Claims>() {
+          @Override
+          public long expireAfterCreate(String key, Claims claims, long currentTime) {
+            return remainingNanos(claims);
+          }
+
+          @Override
+          public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+            return remainingNanos(claims);
+          }
+
+          @Override
+          public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+          }
+        })
+        .build();
+  }
+
+  public Claims get(String token) {
+    return cache.getIfPresent(digest(token));
+  }
+
+  public void put(String token, Claims claims) {
+    if (claims.getExpiration() == null) {
+      return;
+    }
+
+    cache.put(digest(token), claims);
+  }
+
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  private static long remainingNanos(Claims claims) {
+    long remainingMs = claims.getExpiration().getTime() - new Date().getTime();
+    return TimeUnit.MILLISECONDS.toNanos(Math.max(remainingMs, 0));
+  }
+
+  private static String digest(String token) {
+    try {
+      MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+      return Base64.getEncoder().encodeToString(sha256.digest(token.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+}
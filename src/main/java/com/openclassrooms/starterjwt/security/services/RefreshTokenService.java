@@ -0,0 +1,96 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.openclassrooms.starterjwt.models.RefreshToken;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.RefreshTokenRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+
+/**
+ * Opaque, single-use refresh tokens. Only a SHA-256 digest of each token is stored, and a token is
+ * deleted when it is exchanged, so every refresh rotates it.
+ */
+@Service
+public class RefreshTokenService {
+  private final RefreshTokenRepository refreshTokenRepository;
+
+  private final UserRepository userRepository;
+
+  private final long refreshExpirationMs;
+
+  private final SecureRandom random = new SecureRandom();
+
+  public RefreshTokenService(RefreshTokenRepository refreshTokenRepository,
+      UserRepository userRepository,
+      @Value("${oc.app.jwtRefreshExpirationMs:604800000}") long refreshExpirationMs) {
+    this.refreshTokenRepository = refreshTokenRepository;
+    this.userRepository = userRepository;
+    this.refreshExpirationMs = refreshExpirationMs;
+  }
+
+  @Transactional
+  public String create(Long userId) {
+    byte[] bytes = new byte[32];
+    random.nextBytes(bytes);
+    String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+    refreshTokenRepository.save(RefreshToken.builder()
+        .tokenHash(hash(token))
+        .user(userRepository.getById(userId))
+        .expiresAt(LocalDateTime.now().plus(refreshExpirationMs, ChronoUnit.MILLIS))
+        .build());
+
+    return token;
+  }
+
+  /**
+   * Consumes the token and returns its owner. Of two concurrent calls with the same token, only the
+   * one that actually deletes the row succeeds.
+   */
+  @Transactional
+  public Optional<User> consume(String token) {
+    return refreshTokenRepository.findByTokenHash(hash(token))
+        .filter(refreshToken -> refreshTokenRepository.deleteTokenById(refreshToken.getId()) == 1)
+        .filter(refreshToken -> refreshToken.getExpiresAt().isAfter(LocalDateTime.now()))
+        .map(RefreshToken::getUser);
+  }
+
+  @Transactional
+  public void revoke(String token) {
+    refreshTokenRepository.deleteByTokenHash(hash(token));
+  }
+
+  @Transactional
+  public void revokeAll(Long userId) {
+    refreshTokenRepository.deleteByUserId(userId);
+  }
+
+  @Transactional
+  @Scheduled(fixedDelayString = "${oc.app.jwtRefreshPurgeMs:3600000}")
+  public void purgeExpired() {
+    refreshTokenRepository.deleteExpired(LocalDateTime.now());
+  }
+
+  private static String hash(String token) {
+    try {
+      MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+      return Base64.getUrlEncoder().withoutPadding()
+          .encodeToString(sha256.digest(token.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+}
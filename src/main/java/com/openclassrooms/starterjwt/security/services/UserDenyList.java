@@ -0,0 +1,46 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Ids of deleted users whose tokens may still be in circulation. An entry only has to outlive the
+ * tokens issued before the deletion, so it is dropped once a full token lifetime has passed.
+ */
+@Component
+public class UserDenyList {
+  private final Map<Long, Long> deniedAt = new ConcurrentHashMap<>();
+
+  private final long retentionMs;
+
+  public UserDenyList(@Value("${oc.app.jwtExpirationMs}") long retentionMs) {
+    this.retentionMs = retentionMs;
+  }
+
+  public void deny(Long userId) {
+    long now = System.currentTimeMillis();
+    deniedAt.values().removeIf(deniedAtMs -> now - deniedAtMs > retentionMs);
+    deniedAt.put(userId, now);
+  }
+
+  public boolean isDenied(Long userId) {
+    Long deniedAtMs = deniedAt.get(userId);
+    if (deniedAtMs == null) {
+      return false;
+    }
+
+    if (System.currentTimeMillis() - deniedAtMs > retentionMs) {
+      deniedAt.remove(userId, deniedAtMs);
+      return false;
+    }
+
+    return true;
+  }
+
+  public int size() {
+    return deniedAt.size();
+  }
+}
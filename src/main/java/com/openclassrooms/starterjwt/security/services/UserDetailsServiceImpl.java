@@ -1,25 +1,92 @@
 package com.openclassrooms.starterjwt.security.services;
 
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
 @Service
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService, MeterBinder {
   UserRepository userRepository;
 
-  UserDetailsServiceImpl(UserRepository userRepository) {
+  private final Cache<String, UserDetailsImpl> cache;
+
+  public UserDetailsServiceImpl(UserRepository userRepository) {
+    this(userRepository, 10000, 300000);
+  }
+
+  @Autowired
+  UserDetailsServiceImpl(UserRepository userRepository,
+      @Value("${oc.app.userCacheSize:10000}") long maximumSize,
+      @Value("${oc.app.userCacheTtlMs:300000}") long ttlMs) {
     this.userRepository = userRepository;
+    this.cache = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+        .recordStats()
+        .build();
   }
 
   @Override
-  @Transactional
   public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+    return cache.get(cacheKey(username), key -> loadUser(username));
+  }
+
+  /**
+   * Called by the authentication provider after a successful login when the stored hash uses an
+   * outdated BCrypt cost.
+   */
+  @Override
+  public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+    userRepository.updatePasswordByEmail(userDetails.getUsername(), newPassword);
+    evict(userDetails.getUsername());
+
+    UserDetailsImpl current = (UserDetailsImpl) userDetails;
+    return UserDetailsImpl
+            .builder()
+            .id(current.getId())
+            .username(current.getUsername())
+            .lastName(current.getLastName())
+            .firstName(current.getFirstName())
+            .admin(current.getAdmin())
+            .password(newPassword)
+            .build();
+  }
+
+  public void evict(String username) {
+    cache.invalidate(cacheKey(username));
+  }
+
+  public void evict(Long userId) {
+    cache.asMap().values().removeIf(userDetails -> userId.equals(userDetails.getId()));
+  }
+
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    CaffeineCacheMetrics.monitor(registry, cache, "userDetails");
+  }
+
+  private UserDetailsImpl loadUser(String username) {
     User user = userRepository.findByEmail(username)
         .orElseThrow(() -> new UsernameNotFoundException("User Not Found with email: " + username));
 
@@ -29,8 +96,12 @@ public class UserDetailsServiceImpl implements UserDetailsService {
             .username(user.getEmail())
             .lastName(user.getLastName())
             .firstName(user.getFirstName())
+            .admin(user.isAdmin())
             .password(user.getPassword())
             .build();
   }
 
+  private static String cacheKey(String username) {
+    return username.toLowerCase(Locale.ROOT);
+  }
 }
@@ -0,0 +1,43 @@
+package com.openclassrooms.starterjwt.security.throttle;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.openclassrooms.starterjwt.exception.TooManyRequestsException;
+
+/**
+ * Rejects login attempts before any password hashing once a client address or a target email has
+ * used up its attempts.
+ */
+@Component
+public class LoginThrottle {
+  private static final int STRIPES = 64;
+
+  private final TokenBucketLimiter byClient;
+
+  private final TokenBucketLimiter byEmail;
+
+  public LoginThrottle(
+      @Value("${oc.app.loginThrottle.clientCapacity:20}") int clientCapacity,
+      @Value("${oc.app.loginThrottle.clientPerMinute:20}") int clientPerMinute,
+      @Value("${oc.app.loginThrottle.emailCapacity:5}") int emailCapacity,
+      @Value("${oc.app.loginThrottle.emailPerMinute:5}") int emailPerMinute,
+      @Value("${oc.app.loginThrottle.maxKeys:100000}") int maxKeys) {
+    this.byClient = new TokenBucketLimiter(clientCapacity, TimeUnit.MINUTES.toNanos(1) / clientPerMinute, maxKeys, STRIPES);
+    this.byEmail = new TokenBucketLimiter(emailCapacity, TimeUnit.MINUTES.toNanos(1) / emailPerMinute, maxKeys, STRIPES);
+  }
+
+  public void check(String email, String clientAddress) {
+    long waitNanos = byClient.tryAcquire(clientAddress);
+    if (waitNanos == 0 && email != null) {
+      waitNanos = byEmail.tryAcquire(email.toLowerCase(Locale.ROOT));
+    }
+
+    if (waitNanos > 0) {
+      throw new TooManyRequestsException(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1)));
+    }
+  }
+}
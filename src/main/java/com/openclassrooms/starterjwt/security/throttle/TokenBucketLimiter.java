@@ -0,0 +1,114 @@
+package com.openclassrooms.starterjwt.security.throttle;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Token buckets keyed by string, split over lock stripes so concurrent logins for different keys
+ * rarely contend. Each stripe keeps its buckets in access order and is capped, and a bucket left
+ * idle long enough to be full again is dropped, since a fresh bucket behaves the same.
+ */
+public class TokenBucketLimiter {
+  private final Stripe[] stripes;
+
+  private final double capacity;
+
+  private final long nanosPerToken;
+
+  private final long idleNanos;
+
+  private final int maxBucketsPerStripe;
+
+  private final LongSupplier nanoClock;
+
+  public TokenBucketLimiter(int capacity, long nanosPerToken, int maxBuckets, int stripeCount) {
+    this(capacity, nanosPerToken, maxBuckets, stripeCount, System::nanoTime);
+  }
+
+  TokenBucketLimiter(int capacity, long nanosPerToken, int maxBuckets, int stripeCount, LongSupplier nanoClock) {
+    this.capacity = capacity;
+    this.nanosPerToken = nanosPerToken;
+    this.idleNanos = capacity * nanosPerToken;
+    this.maxBucketsPerStripe = Math.max(1, maxBuckets / stripeCount);
+    this.nanoClock = nanoClock;
+    this.stripes = new Stripe[stripeCount];
+    for (int i = 0; i < stripeCount; i++) {
+      stripes[i] = new Stripe();
+    }
+  }
+
+  /**
+   * Takes one token for the key.
+   *
+   * @return 0 when a token was taken, otherwise the nanoseconds until the next token is available
+   */
+  public long tryAcquire(String key) {
+    int hash = key.hashCode();
+    Stripe stripe = stripes[((hash ^ (hash >>> 16)) & 0x7fffffff) % stripes.length];
+    synchronized (stripe) {
+      return stripe.tryAcquire(key, nanoClock.getAsLong());
+    }
+  }
+
+  public int size() {
+    int size = 0;
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        size += stripe.buckets.size();
+      }
+    }
+    return size;
+  }
+
+  private final class Stripe {
+    private final LinkedHashMap<String, Bucket> buckets = new LinkedHashMap<String, Bucket>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+        return size() > maxBucketsPerStripe;
+      }
+    };
+
+    long tryAcquire(String key, long now) {
+      evictIdle(now);
+
+      Bucket bucket = buckets.get(key);
+      if (bucket == null) {
+        bucket = new Bucket(capacity, now);
+        buckets.put(key, bucket);
+      }
+
+      bucket.tokens = Math.min(capacity, bucket.tokens + (now - bucket.lastRefill) / (double) nanosPerToken);
+      bucket.lastRefill = now;
+
+      if (bucket.tokens >= 1) {
+        bucket.tokens -= 1;
+        return 0;
+      }
+
+      return (long) Math.ceil((1 - bucket.tokens) * nanosPerToken);
+    }
+
+    private void evictIdle(long now) {
+      Iterator<Bucket> eldestFirst = buckets.values().iterator();
+      while (eldestFirst.hasNext()) {
+        if (now - eldestFirst.next().lastRefill < idleNanos) {
+          return;
+        }
+        eldestFirst.remove();
+      }
+    }
+  }
+
+  private static final class Bucket {
+    private double tokens;
+
+    private long lastRefill;
+
+    private Bucket(double tokens, long lastRefill) {
+      this.tokens = tokens;
+      this.lastRefill = lastRefill;
+    }
+  }
+}
@@ -0,0 +1,32 @@
+package com.openclassrooms.starterjwt.services;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Defers updates of the in-memory views ({@link SessionListCache}, {@link SessionCalendarIndex}) until the
+ * surrounding transaction commits: earlier, a concurrent read could cache rows that are not committed yet
+ * under the new version, and a rollback would leave the views ahead of the database.
+ */
+final class AfterCommit {
+    private AfterCommit() {
+    }
+
+    /**
+     * Runs {@code action} once the current transaction commits, never if it rolls back,
+     * or right away outside a transaction.
+     */
+    static void run(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,60 @@
+package com.openclassrooms.starterjwt.services;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * {@code /actuator/hibernatecache}: hits, misses, puts and hit ratio of every second-level and query
+ * cache region since startup. Relies on {@code hibernate.generate_statistics}.
+ */
+@Component
+@Endpoint(id = "hibernatecache")
+public class HibernateCacheEndpoint {
+    private final EntityManagerFactory entityManagerFactory;
+
+    public HibernateCacheEndpoint(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @ReadOperation
+    public Map<String, Map<String, Object>> regions() {
+        Statistics statistics = this.entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        Map<String, Map<String, Object>> regions = new TreeMap<>();
+        for (String regionName : statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics region;
+            try {
+                region = statistics.getCacheRegionStatistics(regionName);
+            } catch (IllegalArgumentException e) {
+                // not a data region, e.g. update timestamps
+                continue;
+            }
+            if (region != null) {
+                regions.put(regionName, describe(region));
+            }
+        }
+        return regions;
+    }
+
+    private static Map<String, Object> describe(CacheRegionStatistics region) {
+        long hits = region.getHitCount();
+        long misses = region.getMissCount();
+
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("hitCount", hits);
+        values.put("missCount", misses);
+        values.put("putCount", region.getPutCount());
+        values.put("hitRatio", hits + misses > 0 ? (double) hits / (hits + misses) : 0.0);
+        values.put("elementCountInMemory", region.getElementCountInMemory());
+        return values;
+    }
+}
@@ -0,0 +1,186 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind buffer of participation changes, enabled by {@code oc.app.participationWriteBehind}.
+ * Requests only record the latest change of each (session, user) pair, so a join followed by a leave
+ * before the next flush costs nothing; every {@code oc.app.participationFlushMs} the pending changes
+ * are applied by {@link SessionService#applyParticipationChanges} in transactions of at most
+ * {@code oc.app.participationFlushBatchSize} changes. When the queue is full, or closing, enqueueing
+ * fails fast with a {@link ServiceUnavailableException}. Pending changes are flushed on shutdown.
+ */
+@Component
+public class ParticipationQueue implements MeterBinder, DisposableBean {
+    private static final Logger logger = LoggerFactory.getLogger(ParticipationQueue.class);
+
+    private final SessionService sessionService;
+
+    private final boolean enabled;
+
+    private final int capacity;
+
+    private final int batchSize;
+
+    private final long retryAfterSeconds;
+
+    private final Map<Key, Boolean> pending = new ConcurrentHashMap<>();
+
+    private volatile boolean closed;
+
+    private volatile Timer flushTimer;
+
+    private volatile Counter droppedCounter;
+
+    public ParticipationQueue(SessionService sessionService,
+                              @Value("${oc.app.participationWriteBehind:false}") boolean enabled,
+                              @Value("${oc.app.participationQueueCapacity:100000}") int capacity,
+                              @Value("${oc.app.participationFlushBatchSize:1000}") int batchSize,
+                              @Value("${oc.app.participationQueueRetryAfterSeconds:1}") long retryAfterSeconds) {
+        this.sessionService = sessionService;
+        this.enabled = enabled;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Records that the user joins ({@code true}) or leaves ({@code false}) the session, replacing
+     * any change of the same pair still pending.
+     */
+    public void enqueue(Long sessionId, Long userId, boolean join) {
+        Key key = new Key(sessionId, userId);
+        if (closed || (pending.size() >= capacity && !pending.containsKey(key))) {
+            throw new ServiceUnavailableException(retryAfterSeconds);
+        }
+        pending.put(key, join);
+    }
+
+    public int getDepth() {
+        return pending.size();
+    }
+
+    @Scheduled(fixedDelayString = "${oc.app.participationFlushMs:200}")
+    public synchronized void flush() {
+        while (!pending.isEmpty()) {
+            Map<Key, Boolean> batch = take();
+            if (batch.isEmpty()) {
+                return;
+            }
+            if (!write(batch)) {
+                // newer changes of the same pairs win over the ones put back
+                batch.forEach(pending::putIfAbsent);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("participation.queue.depth", pending, Map::size)
+                .description("Participation changes waiting to be flushed")
+                .register(registry);
+        flushTimer = Timer.builder("participation.queue.flush")
+                .description("Time spent writing one batch of participation changes")
+                .register(registry);
+        droppedCounter = Counter.builder("participation.queue.dropped")
+                .description("Flushed participation changes that no longer applied")
+                .register(registry);
+    }
+
+    /**
+     * Stops accepting changes and writes the pending ones while the database is still available.
+     */
+    @Override
+    public void destroy() {
+        closed = true;
+        flush();
+        if (!pending.isEmpty()) {
+            logger.warn("{} participation changes could not be flushed on shutdown", pending.size());
+        }
+    }
+
+    private Map<Key, Boolean> take() {
+        Map<Key, Boolean> batch = new LinkedHashMap<>();
+        Iterator<Key> keys = pending.keySet().iterator();
+        while (batch.size() < batchSize && keys.hasNext()) {
+            Key key = keys.next();
+            // removed one by one so that a change enqueued meanwhile stays for the next batch
+            Boolean join = pending.remove(key);
+            if (join != null) {
+                batch.put(key, join);
+            }
+        }
+        return batch;
+    }
+
+    private boolean write(Map<Key, Boolean> batch) {
+        Map<Long, Map<Long, Boolean>> changesBySessionId = new LinkedHashMap<>();
+        batch.forEach((key, join) ->
+                changesBySessionId.computeIfAbsent(key.sessionId, sessionId -> new LinkedHashMap<>()).put(key.userId, join));
+
+        long start = System.nanoTime();
+        try {
+            int written = sessionService.applyParticipationChanges(changesBySessionId);
+            Counter counter = droppedCounter;
+            if (counter != null) {
+                counter.increment(batch.size() - written);
+            }
+            return true;
+        } catch (RuntimeException e) {
+            logger.error("Cannot flush {} participation changes: {}", batch.size(), e.getMessage());
+            return false;
+        } finally {
+            Timer timer = flushTimer;
+            if (timer != null) {
+                timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private static final class Key {
+        private final Long sessionId;
+
+        private final Long userId;
+
+        private Key(Long sessionId, Long userId) {
+            this.sessionId = sessionId;
+            this.userId = userId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return sessionId.equals(key.sessionId) && userId.equals(key.userId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(sessionId, userId);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.mapper.SessionMapper;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.SessionSpecifications;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+
+/**
+ * Process-local copy of the sessions dated from the start of the current day onwards, ordered by
+ * date then id, so that upcoming sessions are listed without a database round trip. Loaded once the
+ * application is ready and kept current by {@link SessionService} writes; earlier dates are read
+ * from the database. Writes made by other instances are picked up by a full reload every
+ * {@code oc.app.sessionCalendarReloadMs}, which bounds how stale the index can be.
+ */
+@Component
+public class SessionCalendarIndex {
+    private static final Logger logger = LoggerFactory.getLogger(SessionCalendarIndex.class);
+
+    private final SessionRepository sessionRepository;
+
+    private final SessionMapper sessionMapper;
+
+    private volatile ConcurrentSkipListMap<Key, SessionDto> sessionsByDate = new ConcurrentSkipListMap<>();
+
+    private volatile Map<Long, Key> keysById = new ConcurrentHashMap<>();
+
+    private volatile long horizon = Long.MAX_VALUE;
+
+    public SessionCalendarIndex(SessionRepository sessionRepository, SessionMapper sessionMapper) {
+        this.sessionRepository = sessionRepository;
+        this.sessionMapper = sessionMapper;
+    }
+
+    /**
+     * Builds the index aside and swaps it in, so that readers never see it partially loaded.
+     * Writes wait for the reload, so none of them is overwritten by the older rows it read. When the
+     * database cannot be read, the current index is kept, or every date keeps being read from the
+     * database if it was never loaded, until the next reload.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void load() {
+        long start = startOfToday();
+        List<Session> sessions;
+        try {
+            sessions = this.sessionRepository.findAll(SessionSpecifications.dateFrom(new Date(start)));
+        } catch (RuntimeException e) {
+            logger.error("Cannot load the session calendar index: {}", e.getMessage());
+            return;
+        }
+
+        ConcurrentSkipListMap<Key, SessionDto> loadedByDate = new ConcurrentSkipListMap<>();
+        Map<Long, Key> loadedKeys = new ConcurrentHashMap<>();
+        for (SessionDto session : this.sessionMapper.toDto(sessions)) {
+            index(loadedByDate, loadedKeys, start, session);
+        }
+
+        this.sessionsByDate = loadedByDate;
+        this.keysById = loadedKeys;
+        // last, so that a reader past the horizon check already sees the loaded sessions
+        this.horizon = start;
+    }
+
+    @Scheduled(fixedDelayString = "${oc.app.sessionCalendarReloadMs:60000}",
+            initialDelayString = "${oc.app.sessionCalendarReloadMs:60000}")
+    public void reload() {
+        load();
+    }
+
+    /**
+     * Drops the sessions of the previous days once a day.
+     */
+    @Scheduled(cron = "${oc.app.sessionCalendarPurgeCron:0 5 0 * * *}")
+    public synchronized void purgePast() {
+        long start = startOfToday();
+        if (start <= this.horizon || this.horizon == Long.MAX_VALUE) {
+            return;
+        }
+
+        NavigableMap<Key, SessionDto> past = this.sessionsByDate.headMap(new Key(start, Long.MIN_VALUE), false);
+        past.keySet().forEach(key -> this.keysById.remove(key.id));
+        past.clear();
+        this.horizon = start;
+    }
+
+    public synchronized void put(Session session) {
+        if (session == null || session.getId() == null) {
+            return;
+        }
+
+        remove(session.getId());
+        index(this.sessionMapper.toDto(session));
+    }
+
+    public synchronized void remove(Long id) {
+        Key key = this.keysById.remove(id);
+        if (key != null) {
+            this.sessionsByDate.remove(key);
+        }
+    }
+
+    /**
+     * Removes a deleted user from the participants. Indexed DTOs may be serialized concurrently,
+     * so they are replaced rather than modified.
+     */
+    public synchronized void removeParticipant(Long userId) {
+        this.sessionsByDate.replaceAll((key, session) -> {
+            if (session.getUsers() == null || !session.getUsers().contains(userId)) {
+                return session;
+            }
+            return withUsers(session, users -> users.remove(userId));
+        });
+    }
+
+    public synchronized void addParticipant(Long sessionId, Long userId) {
+        Key key = this.keysById.get(sessionId);
+        if (key != null) {
+            this.sessionsByDate.computeIfPresent(key, (k, session) -> withUsers(session, users -> users.add(userId)));
+        }
+    }
+
+    public synchronized void removeParticipant(Long sessionId, Long userId) {
+        Key key = this.keysById.get(sessionId);
+        if (key != null) {
+            this.sessionsByDate.computeIfPresent(key, (k, session) -> withUsers(session, users -> users.remove(userId)));
+        }
+    }
+
+    /**
+     * At most {@code limit} sessions dated at or after {@code from}.
+     */
+    public List<SessionDto> upcoming(Date from, int limit) {
+        if (from.getTime() < this.horizon) {
+            return this.sessionMapper.toDto(
+                    this.sessionRepository.findSlice(SessionSpecifications.dateFrom(from), limit).getContent());
+        }
+
+        List<SessionDto> sessions = new ArrayList<>(Math.min(limit, 64));
+        for (SessionDto session : this.sessionsByDate.tailMap(new Key(from.getTime(), Long.MIN_VALUE)).values()) {
+            if (sessions.size() == limit) {
+                break;
+            }
+            sessions.add(session);
+        }
+        return sessions;
+    }
+
+    public int size() {
+        return this.sessionsByDate.size();
+    }
+
+    private void index(SessionDto session) {
+        index(this.sessionsByDate, this.keysById, this.horizon, session);
+    }
+
+    private static void index(Map<Key, SessionDto> byDate, Map<Long, Key> keys, long horizon, SessionDto session) {
+        if (session.getDate() == null || session.getDate().getTime() < horizon) {
+            return;
+        }
+
+        Key key = new Key(session.getDate().getTime(), session.getId());
+        keys.put(session.getId(), key);
+        byDate.put(key, session);
+    }
+
+    private static SessionDto withUsers(SessionDto session, Consumer<List<Long>> change) {
+        List<Long> users = session.getUsers() != null ? new ArrayList<>(session.getUsers()) : new ArrayList<>();
+        change.accept(users);
+        return new SessionDto(session.getId(), session.getName(), session.getDate(), session.getTeacher_id(),
+                session.getDescription(), users, users.size(), session.getCapacity(), session.getCreatedAt(), session.getUpdatedAt());
+    }
+
+    private static long startOfToday() {
+        return LocalDate.now().atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static final class Key implements Comparable<Key> {
+        private final long date;
+
+        private final long id;
+
+        private Key(long date, long id) {
+            this.date = date;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int byDate = Long.compare(date, other.date);
+            return byDate != 0 ? byDate : Long.compare(id, other.id);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return date == key.date && id == key.id;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(date) * 31 + Long.hashCode(id);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.repository.SessionExportRepository;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Writes the session list as a JSON array while it is being read, so memory stays flat whatever
+ * the size of the catalog and the first bytes leave before the query completes.
+ */
+@Service
+public class SessionExporter {
+    private final SessionExportRepository sessionExportRepository;
+
+    private final ObjectMapper objectMapper;
+
+    public SessionExporter(SessionExportRepository sessionExportRepository, ObjectMapper objectMapper) {
+        this.sessionExportRepository = sessionExportRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    public void writeAll(OutputStream out) throws IOException {
+        try (JsonGenerator generator = this.objectMapper.getFactory().createGenerator(out)) {
+            generator.writeStartArray();
+            try {
+                this.sessionExportRepository.forEach(sessionDto -> {
+                    try {
+                        generator.writeObject(sessionDto);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            generator.writeEndArray();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serialized body of the full session list, rebuilt only when the catalog version changes.
+ * Every write to sessions or participations must call {@link #bump()} once it is committed.
+ */
+@Component
+public class SessionListCache {
+    private final ObjectMapper objectMapper;
+
+    private final boolean gzip;
+
+    /**
+     * Distinguishes the versions of this instance from those of a previous run or another node.
+     */
+    private final String epoch = Long.toHexString(ThreadLocalRandom.current().nextLong());
+
+    private final AtomicLong version = new AtomicLong();
+
+    private volatile Body body;
+
+    public SessionListCache(ObjectMapper objectMapper, @Value("${oc.app.sessionListGzip:true}") boolean gzip) {
+        this.objectMapper = objectMapper;
+        this.gzip = gzip;
+    }
+
+    public void bump() {
+        this.version.incrementAndGet();
+    }
+
+    public long getVersion() {
+        return this.version.get();
+    }
+
+    /**
+     * Returns the body of the current version, calling {@code loader} only if it is not cached yet.
+     */
+    public Body get(Supplier<?> loader) {
+        long current = this.version.get();
+        Body cached = this.body;
+        if (cached != null && cached.version == current) {
+            return cached;
+        }
+
+        synchronized (this) {
+            current = this.version.get();
+            cached = this.body;
+            if (cached == null || cached.version != current) {
+                // Loaded after reading the version, so a concurrent bump only makes the next call reload.
+                cached = serialize(current, loader.get());
+                this.body = cached;
+            }
+            return cached;
+        }
+    }
+
+    private Body serialize(long bodyVersion, Object value) {
+        try {
+            byte[] json = this.objectMapper.writeValueAsBytes(value);
+            return new Body(bodyVersion, "\"" + this.epoch + "-" + bodyVersion, json, this.gzip ? gzip(json) : null);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize the session list", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4 + 64);
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+            gzipOut.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public static final class Body {
+        private final long version;
+
+        private final String etagPrefix;
+
+        private final byte[] json;
+
+        private final byte[] gzip;
+
+        private Body(long version, String etagPrefix, byte[] json, byte[] gzip) {
+            this.version = version;
+            this.etagPrefix = etagPrefix;
+            this.json = json;
+            this.gzip = gzip;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+
+        /**
+         * {@code null} when pre-compression is disabled.
+         */
+        public byte[] getGzip() {
+            return gzip;
+        }
+
+        /**
+         * Strong ETag of the representation; the gzip encoding gets its own since its bytes differ.
+         */
+        public String getEtag(boolean gzipped) {
+            return etagPrefix + (gzipped ? "-gzip\"" : "\"");
+        }
+    }
+}
@@ -1,14 +1,36 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.dto.EnrolmentResultDto;
+import com.openclassrooms.starterjwt.dto.SessionDto;
 import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.ConflictException;
 import com.openclassrooms.starterjwt.exception.NotFoundException;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.SessionSpecifications;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.Tuple;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -17,62 +39,394 @@ public class SessionService {
 
     private final UserRepository userRepository;
 
-    public SessionService(SessionRepository sessionRepository, UserRepository userRepository) {
+    private final SessionListCache sessionListCache;
+
+    private final SessionCalendarIndex sessionCalendarIndex;
+
+    @Value("${oc.app.sessionPageMaxSize:100}")
+    private int maxPageSize;
+
+    @Value("${oc.app.bulkEnrolmentMaxSize:500}")
+    private int maxBulkSize;
+
+    public SessionService(SessionRepository sessionRepository,
+                          UserRepository userRepository,
+                          SessionListCache sessionListCache,
+                          SessionCalendarIndex sessionCalendarIndex) {
         this.sessionRepository = sessionRepository;
         this.userRepository = userRepository;
+        this.sessionListCache = sessionListCache;
+        this.sessionCalendarIndex = sessionCalendarIndex;
     }
 
+    /**
+     * Creates the session with its submitted participants, rejecting more of them than its capacity.
+     */
+    @Transactional
     public Session create(Session session) {
-        return this.sessionRepository.save(session);
+        checkCapacity(session);
+        Session created = this.sessionRepository.save(session);
+        if (created.getUsers() != null && !created.getUsers().isEmpty()) {
+            // seats_taken is only counted once the PARTICIPATE rows are written
+            this.sessionRepository.flush();
+            this.sessionRepository.recountSeats(created.getId());
+        }
+
+        AfterCommit.run(() -> {
+            this.sessionListCache.bump();
+            this.sessionCalendarIndex.put(created);
+        });
+        return created;
+    }
+
+    /**
+     * Creates the sessions in one transaction. Their ids come from a pooled generator, so the inserts
+     * reach the database as JDBC batches at commit instead of one round trip each.
+     * At most {@code oc.app.bulkEnrolmentMaxSize} sessions per call, none with more participants than its capacity.
+     */
+    @Transactional
+    public List<Session> createAll(List<Session> sessions) {
+        checkBulkSize(sessions);
+        sessions.forEach(SessionService::checkCapacity);
+        List<Session> created = this.sessionRepository.saveAll(sessions);
+
+        List<Long> withParticipants = created.stream()
+                .filter(session -> session.getUsers() != null && !session.getUsers().isEmpty())
+                .map(Session::getId)
+                .collect(Collectors.toList());
+        if (!withParticipants.isEmpty()) {
+            // seats_taken is only counted once the PARTICIPATE rows are written
+            this.sessionRepository.flush();
+            withParticipants.forEach(this.sessionRepository::recountSeats);
+        }
+
+        AfterCommit.run(() -> {
+            this.sessionListCache.bump();
+            created.forEach(this.sessionCalendarIndex::put);
+        });
+        return created;
     }
 
     public void delete(Long id) {
         this.sessionRepository.deleteById(id);
+        this.sessionListCache.bump();
+        this.sessionCalendarIndex.remove(id);
     }
 
     public List<Session> findAll() {
         return this.sessionRepository.findAll();
     }
 
+    /**
+     * Sessions matching {@code filter}, ordered by date then id. A {@code null} filter matches everything.
+     */
+    public List<Session> findAll(Specification<Session> filter) {
+        return this.sessionRepository.findAll(filter, Sort.by("date", "id"));
+    }
+
+    /**
+     * Keyset page of the sessions matching {@code filter}, ordered by date then id, starting right after
+     * {@code (afterDate, afterId)} or at the beginning when {@code afterDate} is {@code null}.
+     * The size is capped at {@code oc.app.sessionPageMaxSize}.
+     */
+    public Slice<Session> findPage(Specification<Session> filter, Date afterDate, Long afterId, int size) {
+        Specification<Session> specification = Specification.where(filter);
+        if (afterDate != null) {
+            specification = specification.and(SessionSpecifications.after(afterDate, afterId));
+        }
+
+        return this.sessionRepository.findSlice(specification, Math.max(1, Math.min(size, maxPageSize)));
+    }
+
+    /**
+     * Same as {@link #findPage} selecting only the columns behind the given {@code SessionDto} fields;
+     * participants are not columns of SESSIONS and are left to the mapper.
+     * A {@code null} size returns every matching session, as {@link #findAll(Specification)} does.
+     */
+    public Slice<Tuple> findFields(Specification<Session> filter, Date afterDate, Long afterId, Integer size,
+                                   Collection<String> fields) {
+        Specification<Session> specification = Specification.where(filter);
+        if (afterDate != null) {
+            specification = specification.and(SessionSpecifications.after(afterDate, afterId));
+        }
+
+        List<String> columns = fields.stream()
+                .filter(field -> !field.equals("users") && !field.equals("participantCount"))
+                .collect(Collectors.toList());
+        return this.sessionRepository.findColumns(specification, columns,
+                size != null ? Integer.valueOf(Math.max(1, Math.min(size, maxPageSize))) : null);
+    }
+
+    /**
+     * At most {@code limit} sessions dated at or after {@code from}, capped at {@code oc.app.sessionPageMaxSize}.
+     */
+    public List<SessionDto> findUpcoming(Date from, int limit) {
+        return this.sessionCalendarIndex.upcoming(from, Math.max(1, Math.min(limit, maxPageSize)));
+    }
+
+    /**
+     * Participant ids of a session in increasing order, after {@code afterUserId} when given.
+     */
+    public Slice<Long> findParticipantIds(Long id, Long afterUserId, int size) {
+        if (!this.sessionRepository.existsById(id)) {
+            throw new NotFoundException();
+        }
+
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+        // one extra row tells whether there is a next page
+        List<Long> userIds = this.sessionRepository
+                .findParticipantIdsAfter(id, afterUserId != null ? afterUserId : 0L, PageRequest.of(0, pageSize + 1))
+                .stream()
+                .map(Number::longValue)
+                .collect(Collectors.toList());
+
+        boolean hasNext = userIds.size() > pageSize;
+        return new SliceImpl<>(hasNext ? userIds.subList(0, pageSize) : userIds, PageRequest.of(0, pageSize), hasNext);
+    }
+
     public Session getById(Long id) {
         return this.sessionRepository.findById(id).orElse(null);
     }
 
+    /**
+     * Replaces the session and its participants with the submitted ones, rejecting more participants
+     * than the capacity. The session row is locked first, so that no enrolment slips in between the
+     * check and the seat recount.
+     */
+    @Transactional
     public Session update(Long id, Session session) {
+        checkCapacity(session);
+        this.sessionRepository.findAllByIdForUpdate(Collections.singletonList(id));
         session.setId(id);
-        return this.sessionRepository.save(session);
+        Session updated = this.sessionRepository.save(session);
+        // saving replaces the participants with the submitted ones
+        this.sessionRepository.flush();
+        this.sessionRepository.recountSeats(id);
+
+        AfterCommit.run(() -> {
+            this.sessionListCache.bump();
+            this.sessionCalendarIndex.put(updated);
+        });
+        return updated;
     }
 
+    /**
+     * Takes a seat, then inserts the single PARTICIPATE row instead of saving the session with all its
+     * participants. The seat comes first so that the SESSIONS row is locked before PARTICIPATE, as in
+     * the bulk paths: the insert only takes a shared lock on it through the foreign key, and two
+     * enrolments upgrading that lock the other way round would deadlock. A full session answers 409;
+     * a user who already participates answers 400 and the seat is rolled back.
+     */
+    @Transactional
     public void participate(Long id, Long userId) {
-        Session session = this.sessionRepository.findById(id).orElse(null);
-        User user = this.userRepository.findById(userId).orElse(null);
-        if (session == null || user == null) {
+        if (!this.sessionRepository.existsById(id) || !this.userRepository.existsById(userId)) {
             throw new NotFoundException();
         }
 
-        boolean alreadyParticipate = session.getUsers().stream().anyMatch(o -> o.getId().equals(userId));
+        if (this.sessionRepository.takeSeat(id) == 0) {
+            throw new ConflictException();
+        }
+
+        boolean alreadyParticipate = this.sessionRepository.addParticipant(id, userId) == 0;
         if(alreadyParticipate) {
             throw new BadRequestException();
         }
 
-        session.getUsers().add(user);
+        AfterCommit.run(() -> {
+            this.sessionCalendarIndex.addParticipant(id, userId);
+            this.sessionListCache.bump();
+        });
+    }
 
-        this.sessionRepository.save(session);
+    /**
+     * Enrols the users in one session in a single transaction, with one result per distinct user
+     * in request order. Unknown users, current participants and users past the capacity are reported,
+     * not enrolled; an unknown session answers 404.
+     */
+    @Transactional
+    public List<EnrolmentResultDto> participateAll(Long id, List<Long> userIds) {
+        checkBulkSize(userIds);
+        List<Session> sessions = this.sessionRepository.findAllByIdForUpdate(Collections.singletonList(id));
+        if (sessions.isEmpty()) {
+            throw new NotFoundException();
+        }
+
+        Set<Long> knownUserIds = new HashSet<>(this.userRepository.findExistingIds(userIds));
+        List<EnrolmentResultDto> results = userIds.stream().distinct()
+                .map(userId -> new EnrolmentResultDto(id, userId,
+                        knownUserIds.contains(userId) ? null : EnrolmentResultDto.Status.NOT_FOUND))
+                .collect(Collectors.toList());
+        return enrol(sessions, results);
     }
 
-    public void noLongerParticipate(Long id, Long userId) {
-        Session session = this.sessionRepository.findById(id).orElse(null);
-        if (session == null) {
+    /**
+     * Same as {@link #participateAll} for one user and several sessions; an unknown user answers 404.
+     */
+    @Transactional
+    public List<EnrolmentResultDto> participateInAll(Long userId, List<Long> sessionIds) {
+        checkBulkSize(sessionIds);
+        if (!this.userRepository.existsById(userId)) {
             throw new NotFoundException();
         }
 
-        boolean alreadyParticipate = session.getUsers().stream().anyMatch(o -> o.getId().equals(userId));
-        if(!alreadyParticipate) {
+        List<Session> sessions = this.sessionRepository.findAllByIdForUpdate(sessionIds);
+        Set<Long> knownSessionIds = sessions.stream().map(Session::getId).collect(Collectors.toSet());
+        List<EnrolmentResultDto> results = sessionIds.stream().distinct()
+                .map(sessionId -> new EnrolmentResultDto(sessionId, userId,
+                        knownSessionIds.contains(sessionId) ? null : EnrolmentResultDto.Status.NOT_FOUND))
+                .collect(Collectors.toList());
+        return enrol(sessions, results);
+    }
+
+    @Transactional
+    public void noLongerParticipate(Long id, Long userId) {
+        boolean participated = this.sessionRepository.removeParticipant(id, userId) > 0;
+        if (!participated) {
+            if (!this.sessionRepository.existsById(id)) {
+                throw new NotFoundException();
+            }
             throw new BadRequestException();
         }
+        this.sessionRepository.releaseSeat(id);
+
+        AfterCommit.run(() -> {
+            this.sessionCalendarIndex.removeParticipant(id, userId);
+            this.sessionListCache.bump();
+        });
+    }
+
+    /**
+     * Applies queued participation changes, {@code true} to join and {@code false} to leave, keyed by
+     * session then user, in one transaction. Changes that no longer hold are dropped: unknown session
+     * or user, joining twice, leaving without participating, joining a full session.
+     *
+     * @return the number of changes written
+     */
+    @Transactional
+    public int applyParticipationChanges(Map<Long, Map<Long, Boolean>> changesBySessionId) {
+        List<Session> sessions = this.sessionRepository.findAllByIdForUpdate(changesBySessionId.keySet());
+        if (sessions.isEmpty()) {
+            return 0;
+        }
+
+        Set<Long> userIds = changesBySessionId.values().stream()
+                .flatMap(changes -> changes.keySet().stream())
+                .collect(Collectors.toSet());
+        Set<Long> knownUserIds = new HashSet<>(this.userRepository.findExistingIds(userIds));
+        Set<Long> sessionIds = sessions.stream().map(Session::getId).collect(Collectors.toSet());
+        Map<Long, Set<Long>> participants = new HashMap<>();
+        for (Object[] row : this.sessionRepository.findParticipations(sessionIds, userIds)) {
+            participants.computeIfAbsent(((Number) row[0]).longValue(), sessionId -> new HashSet<>())
+                    .add(((Number) row[1]).longValue());
+        }
+
+        Map<Long, List<Long>> joins = new LinkedHashMap<>();
+        Map<Long, List<Long>> leaves = new LinkedHashMap<>();
+        for (Session session : sessions) {
+            Set<Long> participating = participants.getOrDefault(session.getId(), Collections.emptySet());
+            int seatsTaken = session.getSeatsTaken();
+            for (Map.Entry<Long, Boolean> change : changesBySessionId.get(session.getId()).entrySet()) {
+                if (!change.getValue() && participating.contains(change.getKey())) {
+                    leaves.computeIfAbsent(session.getId(), sessionId -> new ArrayList<>()).add(change.getKey());
+                    seatsTaken--;
+                }
+            }
+            // leaves first so that their seats go to the joins of the same flush
+            for (Map.Entry<Long, Boolean> change : changesBySessionId.get(session.getId()).entrySet()) {
+                Long userId = change.getKey();
+                if (change.getValue() && knownUserIds.contains(userId) && !participating.contains(userId)
+                        && (session.getCapacity() == null || seatsTaken < session.getCapacity())) {
+                    joins.computeIfAbsent(session.getId(), sessionId -> new ArrayList<>()).add(userId);
+                    seatsTaken++;
+                }
+            }
+        }
+
+        if (!leaves.isEmpty()) {
+            this.sessionRepository.unenrol(leaves);
+        }
+        if (!joins.isEmpty()) {
+            this.sessionRepository.enrol(joins);
+        }
+        if (!leaves.isEmpty() || !joins.isEmpty()) {
+            AfterCommit.run(() -> {
+                leaves.forEach((sessionId, left) ->
+                        left.forEach(userId -> this.sessionCalendarIndex.removeParticipant(sessionId, userId)));
+                joins.forEach((sessionId, joined) ->
+                        joined.forEach(userId -> this.sessionCalendarIndex.addParticipant(sessionId, userId)));
+                this.sessionListCache.bump();
+            });
+        }
+        return leaves.values().stream().mapToInt(List::size).sum() + joins.values().stream().mapToInt(List::size).sum();
+    }
+
+    /**
+     * Decides the results still {@code null} against the locked sessions, then writes all the
+     * enrolments in one batch.
+     */
+    private List<EnrolmentResultDto> enrol(List<Session> sessions, List<EnrolmentResultDto> results) {
+        Map<Long, Session> sessionsById = sessions.stream().collect(Collectors.toMap(Session::getId, session -> session));
+        Set<Long> userIds = results.stream()
+                .filter(result -> result.getStatus() == null)
+                .map(EnrolmentResultDto::getUserId)
+                .collect(Collectors.toSet());
+
+        Map<Long, Set<Long>> participants = new HashMap<>();
+        if (!userIds.isEmpty()) {
+            for (Object[] row : this.sessionRepository.findParticipations(sessionsById.keySet(), userIds)) {
+                participants.computeIfAbsent(((Number) row[0]).longValue(), sessionId -> new HashSet<>())
+                        .add(((Number) row[1]).longValue());
+            }
+        }
+
+        Map<Long, List<Long>> enrolments = new LinkedHashMap<>();
+        for (EnrolmentResultDto result : results) {
+            if (result.getStatus() != null) {
+                continue;
+            }
 
-        session.setUsers(session.getUsers().stream().filter(user -> !user.getId().equals(userId)).collect(Collectors.toList()));
+            Session session = sessionsById.get(result.getSessionId());
+            List<Long> enrolled = enrolments.computeIfAbsent(session.getId(), sessionId -> new ArrayList<>());
+            if (participants.getOrDefault(session.getId(), Collections.emptySet()).contains(result.getUserId())) {
+                result.setStatus(EnrolmentResultDto.Status.ALREADY_PARTICIPATING);
+            } else if (session.getCapacity() != null && session.getSeatsTaken() + enrolled.size() >= session.getCapacity()) {
+                result.setStatus(EnrolmentResultDto.Status.FULL);
+            } else {
+                enrolled.add(result.getUserId());
+                result.setStatus(EnrolmentResultDto.Status.ENROLLED);
+            }
+        }
+
+        enrolments.values().removeIf(List::isEmpty);
+        if (!enrolments.isEmpty()) {
+            this.sessionRepository.enrol(enrolments);
+            AfterCommit.run(() -> {
+                enrolments.forEach((sessionId, enrolled) ->
+                        enrolled.forEach(userId -> this.sessionCalendarIndex.addParticipant(sessionId, userId)));
+                this.sessionListCache.bump();
+            });
+        }
+        return results;
+    }
 
-        this.sessionRepository.save(session);
+    private static void checkCapacity(Session session) {
+        if (session.getCapacity() == null || session.getUsers() == null) {
+            return;
+        }
+
+        long participants = session.getUsers().stream()
+                .filter(Objects::nonNull)
+                .map(User::getId)
+                .distinct()
+                .count();
+        if (participants > session.getCapacity()) {
+            throw new BadRequestException();
+        }
+    }
+
+    private void checkBulkSize(List<?> ids) {
+        if (ids == null || ids.isEmpty() || ids.size() > maxBulkSize || ids.contains(null)) {
+            throw new BadRequestException();
+        }
     }
 }
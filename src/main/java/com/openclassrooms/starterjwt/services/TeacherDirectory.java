@@ -0,0 +1,125 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.mapper.TeacherMapper;
+import com.openclassrooms.starterjwt.models.Teacher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Immutable snapshot of the teachers, read from TEACHERS once and swapped as a whole on refresh, so
+ * that readers never see a half-built directory nor take a lock. Refreshed every
+ * {@code oc.app.teacherDirectoryRefreshMs}; anything writing teachers should call {@link #invalidate()}.
+ * The returned entities are shared and must not be modified.
+ */
+@Component
+public class TeacherDirectory {
+    private final TeacherService teacherService;
+
+    private final TeacherMapper teacherMapper;
+
+    private final ObjectMapper objectMapper;
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+    public TeacherDirectory(TeacherService teacherService, TeacherMapper teacherMapper, ObjectMapper objectMapper) {
+        this.teacherService = teacherService;
+        this.teacherMapper = teacherMapper;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Falls back to TEACHERS for a teacher added since the snapshot was taken, and then drops the
+     * snapshot so that the next read includes it. Unknown ids leave the snapshot alone.
+     */
+    public Teacher findById(Long id) {
+        Teacher teacher = get().teachersById.get(id);
+        if (teacher != null) {
+            return teacher;
+        }
+
+        teacher = this.teacherService.findById(id);
+        if (teacher != null) {
+            invalidate();
+        }
+        return teacher;
+    }
+
+    public List<Teacher> findAll() {
+        return get().teachers;
+    }
+
+    /**
+     * The {@code TeacherDto} list, serialized once per snapshot.
+     */
+    public byte[] getJson() {
+        return get().json;
+    }
+
+    @Scheduled(fixedDelayString = "${oc.app.teacherDirectoryRefreshMs:300000}",
+            initialDelayString = "${oc.app.teacherDirectoryRefreshMs:300000}")
+    public void refresh() {
+        this.snapshot.set(load());
+    }
+
+    /**
+     * Drops the snapshot; the next read loads a fresh one.
+     */
+    public void invalidate() {
+        this.snapshot.set(null);
+    }
+
+    public int size() {
+        return get().teachers.size();
+    }
+
+    private Snapshot get() {
+        Snapshot current = this.snapshot.get();
+        if (current != null) {
+            return current;
+        }
+
+        Snapshot loaded = load();
+        // a concurrent refresh may have won, keep whichever was set first
+        return this.snapshot.compareAndSet(null, loaded) ? loaded : get();
+    }
+
+    private Snapshot load() {
+        List<Teacher> teachers = this.teacherService.findAll();
+
+        Map<Long, Teacher> teachersById = new LinkedHashMap<>();
+        for (Teacher teacher : teachers) {
+            teachersById.put(teacher.getId(), teacher);
+        }
+
+        try {
+            byte[] json = this.objectMapper.writeValueAsBytes(this.teacherMapper.toDto(teachers));
+            return new Snapshot(Collections.unmodifiableMap(teachersById),
+                    Collections.unmodifiableList(new ArrayList<>(teachers)), json);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize the teacher list", e);
+        }
+    }
+
+    private static final class Snapshot {
+        private final Map<Long, Teacher> teachersById;
+
+        private final List<Teacher> teachers;
+
+        private final byte[] json;
+
+        private Snapshot(Map<Long, Teacher> teachersById, List<Teacher> teachers, byte[] json) {
+            this.teachersById = teachersById;
+            this.teachers = teachers;
+            this.json = json;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.openclassrooms.starterjwt.services;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * {@code /actuator/teachers}: size of the {@link TeacherDirectory} snapshot, and {@code DELETE} to
+ * reload it after editing TEACHERS outside the application.
+ */
+@Component
+@Endpoint(id = "teachers")
+public class TeacherDirectoryEndpoint {
+    private final TeacherDirectory teacherDirectory;
+
+    public TeacherDirectoryEndpoint(TeacherDirectory teacherDirectory) {
+        this.teacherDirectory = teacherDirectory;
+    }
+
+    @ReadOperation
+    public Map<String, Integer> size() {
+        return Collections.singletonMap("size", this.teacherDirectory.size());
+    }
+
+    @DeleteOperation
+    public void invalidate() {
+        this.teacherDirectory.invalidate();
+    }
+}
@@ -1,19 +1,61 @@
 package com.openclassrooms.starterjwt.services;
 
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.services.RefreshTokenService;
+import com.openclassrooms.starterjwt.security.services.UserDenyList;
+import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
 public class UserService {
     private final UserRepository userRepository;
 
-    public UserService(UserRepository userRepository) {
+    private final SessionRepository sessionRepository;
+
+    private final UserDenyList userDenyList;
+
+    private final UserDetailsServiceImpl userDetailsService;
+
+    private final RefreshTokenService refreshTokenService;
+
+    private final SessionListCache sessionListCache;
+
+    private final SessionCalendarIndex sessionCalendarIndex;
+
+    public UserService(UserRepository userRepository,
+                       SessionRepository sessionRepository,
+                       UserDenyList userDenyList,
+                       UserDetailsServiceImpl userDetailsService,
+                       RefreshTokenService refreshTokenService,
+                       SessionListCache sessionListCache,
+                       @Lazy SessionCalendarIndex sessionCalendarIndex) {
         this.userRepository = userRepository;
+        this.sessionRepository = sessionRepository;
+        this.userDenyList = userDenyList;
+        this.userDetailsService = userDetailsService;
+        this.refreshTokenService = refreshTokenService;
+        this.sessionListCache = sessionListCache;
+        // lazy: the index maps sessions through SessionMapper, which depends on this service
+        this.sessionCalendarIndex = sessionCalendarIndex;
     }
 
+    @Transactional
     public void delete(Long id) {
+        this.refreshTokenService.revokeAll(id);
+        this.sessionRepository.releaseSeatsOf(id);
+        this.sessionRepository.removeParticipations(id);
         this.userRepository.deleteById(id);
+        // once committed, so that a rollback leaves the account usable and its cached details current
+        AfterCommit.run(() -> {
+            this.userDenyList.deny(id);
+            this.userDetailsService.evict(id);
+            this.sessionListCache.bump();
+            this.sessionCalendarIndex.removeParticipant(id);
+        });
     }
 
     public User findById(Long id) {
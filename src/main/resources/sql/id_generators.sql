@@ -0,0 +1,17 @@
+-- Identifier blocks of SESSIONS, TEACHERS and USERS, reserved 50 at a time by Hibernate
+-- (@TableGenerator, pooled-lo optimizer: next_val is the first id of the next block).
+-- Run once before starting a version that no longer relies on AUTO_INCREMENT.
+CREATE TABLE IF NOT EXISTS `ID_GENERATORS` (
+  `name` VARCHAR(255) NOT NULL PRIMARY KEY,
+  `next_val` BIGINT NOT NULL
+);
+
+INSERT INTO `ID_GENERATORS` (`name`, `next_val`)
+SELECT `ids`.`name`, `ids`.`next_val` FROM (
+  SELECT 'SESSIONS' AS `name`, COALESCE(MAX(`id`), 0) + 1 AS `next_val` FROM `SESSIONS`
+  UNION ALL
+  SELECT 'TEACHERS', COALESCE(MAX(`id`), 0) + 1 FROM `TEACHERS`
+  UNION ALL
+  SELECT 'USERS', COALESCE(MAX(`id`), 0) + 1 FROM `USERS`
+) AS `ids`
+ON DUPLICATE KEY UPDATE `next_val` = GREATEST(`ID_GENERATORS`.`next_val`, `ids`.`next_val`);
@@ -0,0 +1,21 @@
+-- One PARTICIPATE row per (session, user): participate relies on INSERT IGNORE hitting this key to answer
+-- "already participating", so without it duplicates are inserted silently.
+-- Existing duplicates are collapsed to a single row first, otherwise the ALTER fails. Run once.
+START TRANSACTION;
+
+CREATE TEMPORARY TABLE `PARTICIPATE_DUPLICATES` AS
+SELECT `session_id`, `user_id` FROM `PARTICIPATE`
+GROUP BY `session_id`, `user_id`
+HAVING COUNT(*) > 1;
+
+DELETE `p` FROM `PARTICIPATE` `p`
+JOIN `PARTICIPATE_DUPLICATES` `d` ON `d`.`session_id` = `p`.`session_id` AND `d`.`user_id` = `p`.`user_id`;
+
+INSERT INTO `PARTICIPATE` (`session_id`, `user_id`)
+SELECT `session_id`, `user_id` FROM `PARTICIPATE_DUPLICATES`;
+
+COMMIT;
+
+DROP TEMPORARY TABLE `PARTICIPATE_DUPLICATES`;
+
+ALTER TABLE `PARTICIPATE` ADD CONSTRAINT `uk_participate_session_user` UNIQUE (`session_id`, `user_id`);
@@ -0,0 +1,12 @@
+-- Refresh tokens issued on login (only their SHA-256 digest is stored), rotated on each refresh.
+-- Run once on existing databases; user_id must have the same type as USERS.id.
+CREATE TABLE IF NOT EXISTS `REFRESH_TOKENS` (
+  `id` BIGINT PRIMARY KEY AUTO_INCREMENT,
+  `token_hash` VARCHAR(64) NOT NULL,
+  `user_id` INT NOT NULL,
+  `expires_at` TIMESTAMP NOT NULL,
+  `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+  CONSTRAINT `uk_refresh_tokens_token_hash` UNIQUE (`token_hash`),
+  INDEX `idx_refresh_tokens_user_id` (`user_id`),
+  CONSTRAINT `fk_refresh_tokens_user_id` FOREIGN KEY (`user_id`) REFERENCES `USERS` (`id`)
+);
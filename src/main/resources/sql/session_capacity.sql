@@ -0,0 +1,9 @@
+-- Optional session capacity (NULL for no limit) and the seats_taken counter maintained by the
+-- conditional updates of SessionRepository. Run once, after participate_unique.sql so that
+-- duplicate participations are not counted twice.
+ALTER TABLE `SESSIONS`
+  ADD `capacity` INT NULL,
+  ADD `seats_taken` INT NOT NULL DEFAULT 0;
+
+UPDATE `SESSIONS` `s`
+SET `seats_taken` = (SELECT COUNT(*) FROM `PARTICIPATE` `p` WHERE `p`.`session_id` = `s`.`id`);
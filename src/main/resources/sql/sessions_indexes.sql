@@ -0,0 +1,5 @@
+-- Indexes behind the date range and teacher filters of GET /api/session and its (date, id) keyset pages.
+-- InnoDB secondary indexes end with the primary key, so the date index also serves the (date, id) seek.
+-- Run once on existing databases.
+CREATE INDEX `idx_sessions_date` ON `SESSIONS` (`date`);
+CREATE INDEX `idx_sessions_teacher_id` ON `SESSIONS` (`teacher_id`);
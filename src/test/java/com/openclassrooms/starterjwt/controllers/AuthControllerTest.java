@@ -1,14 +1,20 @@
 package com.openclassrooms.starterjwt.controllers;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
+import com.openclassrooms.starterjwt.exception.TooManyRequestsException;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.payload.request.LoginRequest;
 import com.openclassrooms.starterjwt.payload.request.SignupRequest;
+import com.openclassrooms.starterjwt.payload.request.TokenRefreshRequest;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 import com.openclassrooms.starterjwt.security.jwt.AuthEntryPointJwt;
 import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.jwt.RevokedTokenRegistry;
+import com.openclassrooms.starterjwt.security.services.RefreshTokenService;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
+import com.openclassrooms.starterjwt.security.throttle.LoginThrottle;
 import org.apache.catalina.security.SecurityConfig;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -25,11 +31,22 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.web.servlet.MockMvc;
 
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.impl.DefaultClaims;
+
+import java.util.Date;
 import java.util.Optional;
 
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -57,6 +74,15 @@ public class AuthControllerTest {
     @MockBean
     private AuthEntryPointJwt unauthorizedHandler;
 
+    @MockBean
+    private LoginThrottle loginThrottle;
+
+    @MockBean
+    private RefreshTokenService refreshTokenService;
+
+    @Autowired
+    private RevokedTokenRegistry revokedTokenRegistry;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     private User user;
@@ -84,11 +110,89 @@ public class AuthControllerTest {
         when(jwtUtils.generateJwtToken(any(Authentication.class))).thenReturn("mockJwtToken");
         when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(user));
         when(userDetailsService.loadUserByUsername("test@example.com")).thenReturn(userDetails);
+        when(refreshTokenService.create(1L)).thenReturn("mockRefreshToken");
 
         mockMvc.perform(post("/api/auth/login")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(loginRequest)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.refreshToken").value("mockRefreshToken"));
+    }
+
+    @Test
+    void shouldRotateRefreshToken() throws Exception {
+        TokenRefreshRequest refreshRequest = new TokenRefreshRequest();
+        refreshRequest.setRefreshToken("oldRefreshToken");
+
+        when(refreshTokenService.consume("oldRefreshToken")).thenReturn(Optional.of(user));
+        when(userDetailsService.loadUserByUsername("test@example.com")).thenReturn(userDetails);
+        when(jwtUtils.generateJwtToken(userDetails)).thenReturn("newJwtToken");
+        when(refreshTokenService.create(1L)).thenReturn("newRefreshToken");
+
+        mockMvc.perform(post("/api/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(refreshRequest)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.token").value("newJwtToken"))
+                .andExpect(jsonPath("$.refreshToken").value("newRefreshToken"));
+    }
+
+    @Test
+    void shouldRejectUnknownRefreshToken() throws Exception {
+        TokenRefreshRequest refreshRequest = new TokenRefreshRequest();
+        refreshRequest.setRefreshToken("reusedRefreshToken");
+
+        when(refreshTokenService.consume("reusedRefreshToken")).thenReturn(Optional.empty());
+
+        mockMvc.perform(post("/api/auth/refresh")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(refreshRequest)))
+                .andExpect(status().isUnauthorized());
+
+        verify(refreshTokenService, never()).create(any());
+    }
+
+    @Test
+    void shouldRevokeAccessAndRefreshTokensOnLogout() throws Exception {
+        TokenRefreshRequest refreshRequest = new TokenRefreshRequest();
+        refreshRequest.setRefreshToken("refreshToken");
+
+        Claims claims = new DefaultClaims();
+        claims.setId("logout-jti");
+        claims.setExpiration(new Date(System.currentTimeMillis() + 60000));
+        when(jwtUtils.parseJwtClaims("accessToken")).thenReturn(claims);
+
+        mockMvc.perform(post("/api/auth/logout")
+                        .header("Authorization", "Bearer accessToken")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(refreshRequest)))
                 .andExpect(status().isOk());
+
+        assertTrue(revokedTokenRegistry.isRevoked("logout-jti"));
+        verify(refreshTokenService).revoke("refreshToken");
+    }
+
+    @Test
+    void shouldReturnAdminFlagFromAuthenticatedPrincipal() throws Exception {
+        LoginRequest loginRequest = new LoginRequest();
+        loginRequest.setEmail("admin@example.com");
+        loginRequest.setPassword("password");
+
+        UserDetailsImpl admin = new UserDetailsImpl(2L, "admin@example.com", "Jane", "Doe", true, "encodedPassword");
+        Authentication authentication = new UsernamePasswordAuthenticationToken(admin, null, admin.getAuthorities());
+
+        when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
+                .thenReturn(authentication);
+        when(jwtUtils.generateJwtToken(any(Authentication.class))).thenReturn("mockJwtToken");
+
+        mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(loginRequest)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.admin").value(true))
+                .andExpect(jsonPath("$.id").value(2));
+
+        verify(userRepository, never()).findByEmail(anyString());
     }
 
     @Test
@@ -123,4 +227,39 @@ public class AuthControllerTest {
                         .content(objectMapper.writeValueAsString(signupRequest)))
                 .andExpect(status().isBadRequest());
     }
+
+    @Test
+    void shouldReturnServiceUnavailableWhenHashingIsSaturated() throws Exception {
+        SignupRequest signupRequest = new SignupRequest();
+        signupRequest.setEmail("burst@example.com");
+        signupRequest.setPassword("securePassword");
+        signupRequest.setFirstName("Ana");
+        signupRequest.setLastName("Silva");
+
+        when(userRepository.existsByEmail("burst@example.com")).thenReturn(false);
+        when(passwordEncoder.encode("securePassword")).thenThrow(new ServiceUnavailableException(2));
+
+        mockMvc.perform(post("/api/auth/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(signupRequest)))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "2"));
+    }
+
+    @Test
+    void shouldRejectThrottledLoginBeforeAuthenticating() throws Exception {
+        LoginRequest loginRequest = new LoginRequest();
+        loginRequest.setEmail("test@example.com");
+        loginRequest.setPassword("password");
+
+        doThrow(new TooManyRequestsException(30)).when(loginThrottle).check(anyString(), anyString());
+
+        mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(loginRequest)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "30"));
+
+        verify(authenticationManager, never()).authenticate(any());
+    }
 }
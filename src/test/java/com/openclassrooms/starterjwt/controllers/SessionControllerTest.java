@@ -1,16 +1,35 @@
 package com.openclassrooms.starterjwt.controllers;
 
+import com.openclassrooms.starterjwt.dto.EnrolmentResultDto;
+import com.openclassrooms.starterjwt.dto.ParticipantPageDto;
 import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionPageDto;
+import com.openclassrooms.starterjwt.exception.BadRequestException;
 import com.openclassrooms.starterjwt.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
+import com.openclassrooms.starterjwt.services.ParticipationQueue;
+import com.openclassrooms.starterjwt.services.SessionExporter;
+import com.openclassrooms.starterjwt.services.SessionListCache;
 import com.openclassrooms.starterjwt.services.SessionService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.persistence.Tuple;
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -23,6 +42,15 @@ class SessionControllerTest {
     @Mock
     private SessionMapper sessionMapper;
 
+    @Mock
+    private SessionExporter sessionExporter;
+
+    @Mock
+    private ParticipationQueue participationQueue;
+
+    @Spy
+    private SessionListCache sessionListCache = new SessionListCache(new ObjectMapper(), true);
+
     @InjectMocks
     private SessionController sessionController;
 
@@ -64,17 +92,192 @@ class SessionControllerTest {
     }
 
     @Test
-    void testFindAll() {
+    void testFindAll() throws Exception {
         List<Session> sessions = Arrays.asList(new Session(), new Session());
         List<SessionDto> dtos = Arrays.asList(new SessionDto(), new SessionDto());
 
         when(sessionService.findAll()).thenReturn(sessions);
         when(sessionMapper.toDto(sessions)).thenReturn(dtos);
 
-        ResponseEntity<?> response = sessionController.findAll();
+        ResponseEntity<?> response = sessionController.findAll(null, null, false, null, null, null, false, null, null, null);
 
         assertEquals(200, response.getStatusCodeValue());
+        assertArrayEquals(new ObjectMapper().writeValueAsBytes(dtos), (byte[]) response.getBody());
+        assertNotNull(response.getHeaders().getETag());
+    }
+
+    @Test
+    void testFindAll_ServesCachedBodyUntilCatalogChanges() {
+        List<Session> sessions = Collections.singletonList(new Session());
+        when(sessionService.findAll()).thenReturn(sessions);
+        when(sessionMapper.toDto(sessions)).thenReturn(Collections.singletonList(new SessionDto()));
+
+        ResponseEntity<?> first = sessionController.findAll(null, null, false, null, null, null, false, null, null, "gzip, deflate");
+        ResponseEntity<?> second = sessionController.findAll(null, null, false, null, null, null, false, null, null, "gzip, deflate");
+
+        assertEquals("gzip", first.getHeaders().getFirst("Content-Encoding"));
+        assertEquals(first.getHeaders().getETag(), second.getHeaders().getETag());
+        verify(sessionService, times(1)).findAll();
+
+        sessionListCache.bump();
+        ResponseEntity<?> third = sessionController.findAll(null, null, false, null, null, null, false, null, null, null);
+
+        assertNotEquals(first.getHeaders().getETag(), third.getHeaders().getETag());
+        assertNull(third.getHeaders().getFirst("Content-Encoding"));
+        verify(sessionService, times(2)).findAll();
+    }
+
+    @Test
+    void testFindAll_Streamed() throws Exception {
+        ResponseEntity<?> response = sessionController.findAll(null, null, true, null, null, null, false, null, null, null);
+
+        assertEquals(200, response.getStatusCodeValue());
+        verifyNoInteractions(sessionService);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ((StreamingResponseBody) response.getBody()).writeTo(out);
+
+        verify(sessionExporter).writeAll(out);
+    }
+
+    @Test
+    void testFindAll_Paginated() {
+        Session first = new Session().setId(1L).setDate(new Date(1000));
+        Session second = new Session().setId(2L).setDate(new Date(2000));
+        List<Session> sessions = Arrays.asList(first, second);
+        List<SessionDto> dtos = Arrays.asList(new SessionDto(), new SessionDto());
+
+        when(sessionService.findPage(null, null, null, 2)).thenReturn(new SliceImpl<>(sessions, PageRequest.of(0, 2), true));
+        when(sessionMapper.toSummaryDto(sessions)).thenReturn(dtos);
+
+        ResponseEntity<?> response = sessionController.findAll(null, 2, false, null, null, null, false, null, null, null);
+
+        SessionPageDto page = (SessionPageDto) response.getBody();
+        assertEquals(dtos, page.getItems());
+        assertNotNull(page.getNextCursor());
+
+        when(sessionService.findPage(null, new Date(2000), 2L, 2))
+                .thenReturn(new SliceImpl<>(Collections.emptyList(), PageRequest.of(0, 2), false));
+
+        SessionPageDto last = (SessionPageDto) sessionController.findAll(page.getNextCursor(), 2, false, null, null, null, false, null, null, null).getBody();
+
+        assertNull(last.getNextCursor());
+        verify(sessionService).findPage(null, new Date(2000), 2L, 2);
+    }
+
+    @Test
+    void testFindAll_Filtered() {
+        List<Session> sessions = Collections.singletonList(new Session());
+        List<SessionDto> dtos = Collections.singletonList(new SessionDto());
+
+        when(sessionService.findAll(any())).thenReturn(sessions);
+        when(sessionMapper.toSummaryDto(sessions)).thenReturn(dtos);
+
+        ResponseEntity<?> response = sessionController.findAll(null, null, false,
+                LocalDate.of(2024, 5, 6), LocalDate.of(2024, 5, 12), 3L, false, null, null, null);
+
+        assertEquals(dtos, response.getBody());
+        verify(sessionService, never()).findAll();
+        verify(sessionListCache, never()).get(any());
+    }
+
+    @Test
+    void testFindAll_Available() {
+        List<Session> sessions = Collections.singletonList(new Session());
+        when(sessionService.findAll(any())).thenReturn(sessions);
+        when(sessionMapper.toSummaryDto(sessions)).thenReturn(Collections.singletonList(new SessionDto()));
+
+        sessionController.findAll(null, null, false, null, null, null, true, null, null, null);
+
+        verify(sessionService).findAll(notNull());
+        verify(sessionListCache, never()).get(any());
+    }
+
+    @Test
+    void testFindAll_SummaryView() {
+        List<Tuple> rows = Collections.singletonList(mock(Tuple.class));
+        List<Map<String, Object>> sessions = Collections.singletonList(Collections.singletonMap("id", 1L));
+
+        when(sessionService.findFields(null, null, null, null, SessionMapper.SUMMARY_FIELDS)).thenReturn(new SliceImpl<>(rows));
+        when(sessionMapper.toFields(rows, SessionMapper.SUMMARY_FIELDS)).thenReturn(sessions);
+
+        ResponseEntity<?> response = sessionController.findAll(null, null, false, null, null, null, false, null, "summary", null);
+
+        assertEquals(sessions, response.getBody());
+        verify(sessionService, never()).findAll();
+        verify(sessionListCache, never()).get(any());
+    }
+
+    @Test
+    void testFindAll_FieldsPaginated() {
+        Tuple row = mock(Tuple.class);
+        when(row.get("date", Date.class)).thenReturn(new Date(2000));
+        when(row.get("id", Long.class)).thenReturn(2L);
+        List<Tuple> rows = Collections.singletonList(row);
+        List<String> fields = Arrays.asList("id", "name", "date");
+        List<Map<String, Object>> sessions = Collections.singletonList(Collections.singletonMap("id", 2L));
+
+        when(sessionService.findFields(null, null, null, 1, fields)).thenReturn(new SliceImpl<>(rows, PageRequest.of(0, 1), true));
+        when(sessionMapper.toFields(rows, fields)).thenReturn(sessions);
+
+        ResponseEntity<?> response = sessionController.findAll(null, 1, false, null, null, null, false, " date,name ", null, null);
+
+        SessionPageDto page = (SessionPageDto) response.getBody();
+        assertEquals(sessions, page.getItems());
+
+        when(sessionService.findFields(null, new Date(2000), 2L, 1, fields))
+                .thenReturn(new SliceImpl<>(Collections.emptyList(), PageRequest.of(0, 1), false));
+
+        SessionPageDto last = (SessionPageDto) sessionController.findAll(page.getNextCursor(), 1, false, null, null, null, false, "date,name", null, null).getBody();
+
+        assertNull(last.getNextCursor());
+        verify(sessionService).findFields(null, new Date(2000), 2L, 1, fields);
+    }
+
+    @Test
+    void testFindAll_UnknownField() {
+        assertThrows(BadRequestException.class, () -> sessionController.findAll(null, null, false, null, null, null, false, "name,password", null, null));
+        assertThrows(BadRequestException.class, () -> sessionController.findAll(null, null, false, null, null, null, false, null, "compact", null));
+    }
+
+    @Test
+    void testFindUpcoming() {
+        List<SessionDto> dtos = Collections.singletonList(new SessionDto());
+        when(sessionService.findUpcoming(any(Date.class), eq(5))).thenReturn(dtos);
+
+        ResponseEntity<?> response = sessionController.findUpcoming(LocalDate.of(2024, 5, 6).atStartOfDay(), 5);
+
         assertEquals(dtos, response.getBody());
+        verify(sessionService).findUpcoming(
+                Date.from(LocalDate.of(2024, 5, 6).atStartOfDay(ZoneId.systemDefault()).toInstant()), 5);
+    }
+
+    @Test
+    void testFindParticipants() {
+        when(sessionService.findParticipantIds(1L, null, 2))
+                .thenReturn(new SliceImpl<>(Arrays.asList(3L, 5L), PageRequest.of(0, 2), true));
+        when(sessionService.findParticipantIds(1L, 5L, 2))
+                .thenReturn(new SliceImpl<>(Collections.singletonList(8L), PageRequest.of(0, 2), false));
+
+        ParticipantPageDto first = (ParticipantPageDto) sessionController.findParticipants("1", null, 2).getBody();
+        ParticipantPageDto last = (ParticipantPageDto) sessionController.findParticipants("1", first.getNextCursor(), 2).getBody();
+
+        assertEquals(Arrays.asList(3L, 5L), first.getItems());
+        assertEquals("5", first.getNextCursor());
+        assertEquals(Collections.singletonList(8L), last.getItems());
+        assertNull(last.getNextCursor());
+    }
+
+    @Test
+    void testFindParticipants_BadRequest() {
+        ResponseEntity<?> response = sessionController.findParticipants("abc", null, 20);
+
+        assertEquals(400, response.getStatusCodeValue());
+    }
+
+    @Test
+    void testFindAll_InvalidCursor() {
+        assertThrows(BadRequestException.class, () -> sessionController.findAll("not-a-cursor", null, false, null, null, null, false, null, null, null));
     }
 
     @Test
@@ -165,6 +368,50 @@ class SessionControllerTest {
         assertEquals(400, response.getStatusCodeValue());
     }
 
+    @Test
+    void testParticipate_Queued() {
+        when(participationQueue.isEnabled()).thenReturn(true);
+
+        ResponseEntity<?> response = sessionController.participate("1", "2");
+
+        assertEquals(202, response.getStatusCodeValue());
+        assertEquals(new EnrolmentResultDto(1L, 2L, EnrolmentResultDto.Status.QUEUED), response.getBody());
+        verify(participationQueue).enqueue(1L, 2L, true);
+        verifyNoInteractions(sessionService);
+    }
+
+    @Test
+    void testNoLongerParticipate_Queued() {
+        when(participationQueue.isEnabled()).thenReturn(true);
+
+        ResponseEntity<?> response = sessionController.noLongerParticipate("1", "2");
+
+        assertEquals(202, response.getStatusCodeValue());
+        verify(participationQueue).enqueue(1L, 2L, false);
+        verifyNoInteractions(sessionService);
+    }
+
+    @Test
+    void testServiceUnavailable() {
+        ResponseEntity<?> response = sessionController.serviceUnavailable(new ServiceUnavailableException(1));
+
+        assertEquals(503, response.getStatusCodeValue());
+        assertEquals("1", response.getHeaders().getFirst("Retry-After"));
+    }
+
+    @Test
+    void testParticipateAll() {
+        List<EnrolmentResultDto> results = Collections.singletonList(
+                new EnrolmentResultDto(1L, 2L, EnrolmentResultDto.Status.ENROLLED));
+        when(sessionService.participateAll(1L, Arrays.asList(2L, 3L))).thenReturn(results);
+
+        ResponseEntity<?> response = sessionController.participateAll("1", Arrays.asList(2L, 3L));
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals(results, response.getBody());
+        assertEquals(400, sessionController.participateAll("a", Arrays.asList(2L, 3L)).getStatusCodeValue());
+    }
+
     @Test
     void testNoLongerParticipate_Success() {
         ResponseEntity<?> response = sessionController.noLongerParticipate("1", "2");
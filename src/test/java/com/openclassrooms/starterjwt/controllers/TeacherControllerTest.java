@@ -1,9 +1,10 @@
 package com.openclassrooms.starterjwt.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.openclassrooms.starterjwt.dto.TeacherDto;
 import com.openclassrooms.starterjwt.mapper.TeacherMapper;
 import com.openclassrooms.starterjwt.models.Teacher;
-import com.openclassrooms.starterjwt.services.TeacherService;
+import com.openclassrooms.starterjwt.services.TeacherDirectory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -30,7 +31,10 @@ public class TeacherControllerTest {
     private MockMvc mockMvc;
 
     @MockBean
-    private TeacherService teacherService;
+    private TeacherDirectory teacherDirectory;
+
+    @Autowired
+    private ObjectMapper objectMapper;
 
     @MockBean
     private TeacherMapper teacherMapper;
@@ -57,7 +61,7 @@ public class TeacherControllerTest {
     @Test
     @WithMockUser
     void shouldReturnTeacherByIdSuccessfully() throws Exception {
-        when(teacherService.findById(1L)).thenReturn(teacher);
+        when(teacherDirectory.findById(1L)).thenReturn(teacher);
         when(teacherMapper.toDto(teacher)).thenReturn(teacherDto);
 
         mockMvc.perform(get("/api/teacher/1")
@@ -73,7 +77,7 @@ public class TeacherControllerTest {
     @Test
     @WithMockUser
     void shouldReturnNotFoundWhenTeacherDoesNotExist() throws Exception {
-        when(teacherService.findById(1L)).thenReturn(null);
+        when(teacherDirectory.findById(1L)).thenReturn(null);
 
         mockMvc.perform(get("/api/teacher/1")
                         .contentType(MediaType.APPLICATION_JSON))
@@ -91,11 +95,9 @@ public class TeacherControllerTest {
     @Test
     @WithMockUser
     void shouldReturnAllTeachersSuccessfully() throws Exception {
-        List<Teacher> teachers = Arrays.asList(teacher);
         List<TeacherDto> teacherDtos = Arrays.asList(teacherDto);
 
-        when(teacherService.findAll()).thenReturn(teachers);
-        when(teacherMapper.toDto(teachers)).thenReturn(teacherDtos);
+        when(teacherDirectory.getJson()).thenReturn(objectMapper.writeValueAsBytes(teacherDtos));
 
         mockMvc.perform(get("/api/teacher")
                         .contentType(MediaType.APPLICATION_JSON))
@@ -1,9 +1,11 @@
 package com.openclassrooms.starterjwt.controllers;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.dto.EnrolmentResultDto;
 import com.openclassrooms.starterjwt.dto.UserDto;
 import com.openclassrooms.starterjwt.mapper.UserMapper;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.services.SessionService;
 import com.openclassrooms.starterjwt.services.UserService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,6 +13,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -18,12 +21,14 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.time.LocalDateTime;
+import java.util.Arrays;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @SpringBootTest
@@ -39,6 +44,9 @@ public class UserControllerTest {
     @MockBean
     private UserMapper userMapper;
 
+    @MockBean
+    private SessionService sessionService;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     private User user;
@@ -207,6 +215,21 @@ public class UserControllerTest {
         verify(userService, never()).delete(anyLong());
     }
 
+    @Test
+    void shouldEnrolUserInSeveralSessions() throws Exception {
+        when(sessionService.participateInAll(1L, Arrays.asList(4L, 5L))).thenReturn(Arrays.asList(
+                new EnrolmentResultDto(4L, 1L, EnrolmentResultDto.Status.ENROLLED),
+                new EnrolmentResultDto(5L, 1L, EnrolmentResultDto.Status.FULL)));
+
+        mockMvc.perform(post("/api/user/1/sessions")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[4, 5]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("ENROLLED"))
+                .andExpect(jsonPath("$[1].sessionId").value(5))
+                .andExpect(jsonPath("$[1].status").value("FULL"));
+    }
+
     @Test
     void shouldReturnNotFoundWhenDeletingNonExistingUser() throws Exception {
         when(userService.findById(1L)).thenReturn(null);
@@ -4,38 +4,47 @@ import com.openclassrooms.starterjwt.dto.SessionDto;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.models.User;
-import com.openclassrooms.starterjwt.services.TeacherService;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.services.TeacherDirectory;
 import com.openclassrooms.starterjwt.services.UserService;
 import org.junit.jupiter.api.BeforeEach;
+import org.hibernate.collection.internal.PersistentBag;
 import org.junit.jupiter.api.Test;
 import org.mapstruct.factory.Mappers;
 
+import javax.persistence.Tuple;
+
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Date;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 import static org.mockito.Mockito.*;
 
 class SessionMapperTest {
 
     private SessionMapper sessionMapper;
 
-    private TeacherService teacherService;
+    private TeacherDirectory teacherDirectory;
     private UserService userService;
+    private SessionRepository sessionRepository;
 
     @BeforeEach
     void setUp() {
-        teacherService = mock(TeacherService.class);
+        teacherDirectory = mock(TeacherDirectory.class);
         userService = mock(UserService.class);
+        sessionRepository = mock(SessionRepository.class);
 
         sessionMapper = Mappers.getMapper(SessionMapper.class);
 
-        sessionMapper.teacherService = teacherService;
+        sessionMapper.teacherDirectory = teacherDirectory;
         sessionMapper.userService = userService;
+        sessionMapper.sessionRepository = sessionRepository;
     }
 
     private Date currentDate() {
@@ -57,7 +66,7 @@ class SessionMapperTest {
 
         Teacher mockTeacher = new Teacher();
         mockTeacher.setId(teacherId);
-        when(teacherService.findById(teacherId)).thenReturn(mockTeacher);
+        when(teacherDirectory.findById(teacherId)).thenReturn(mockTeacher);
 
         User user1 = new User(); user1.setId(1L);
         User user2 = new User(); user2.setId(2L);
@@ -93,6 +102,7 @@ class SessionMapperTest {
         assertThat(dto).isNotNull();
         assertThat(dto.getTeacher_id()).isEqualTo(42L);
         assertThat(dto.getUsers()).containsExactly(1L, 2L);
+        assertThat(dto.getParticipantCount()).isEqualTo(2);
         assertThat(dto.getDescription()).isEqualTo("Dance session");
     }
 
@@ -141,7 +151,7 @@ class SessionMapperTest {
         dto.setUsers(Arrays.asList(1L, 2L));
 
         Teacher teacher = new Teacher(); teacher.setId(100L);
-        when(teacherService.findById(100L)).thenReturn(teacher);
+        when(teacherDirectory.findById(100L)).thenReturn(teacher);
         when(userService.findById(1L)).thenReturn(null);
         when(userService.findById(2L)).thenReturn(null);
 
@@ -164,7 +174,7 @@ class SessionMapperTest {
         Teacher teacher = new Teacher(); teacher.setId(101L);
         User user = new User(); user.setId(1L);
 
-        when(teacherService.findById(101L)).thenReturn(teacher);
+        when(teacherDirectory.findById(101L)).thenReturn(teacher);
         when(userService.findById(1L)).thenReturn(user);
 
         List<Session> sessions = sessionMapper.toEntity(Collections.singletonList(dto));
@@ -194,6 +204,79 @@ class SessionMapperTest {
         assertThat(dtos.get(0).getUsers()).containsExactly(2L);
     }
 
+    @Test
+    void shouldReadLazyParticipantsFromJoinTableInOneQuery() {
+        Session first = new Session().setId(15L).setName("Hatha").setUsers(new PersistentBag());
+        Session second = new Session().setId(16L).setName("Vinyasa").setUsers(new PersistentBag());
+
+        when(sessionRepository.findParticipantIds(Arrays.asList(15L, 16L))).thenReturn(Arrays.asList(
+                new Object[] {15L, 1L},
+                new Object[] {15L, 2L},
+                new Object[] {16L, 3L}));
+
+        List<SessionDto> dtos = sessionMapper.toDto(Arrays.asList(first, second));
+
+        assertThat(dtos.get(0).getUsers()).containsExactly(1L, 2L);
+        assertThat(dtos.get(1).getUsers()).containsExactly(3L);
+        verify(sessionRepository, times(1)).findParticipantIds(any());
+    }
+
+    @Test
+    void shouldCountLazyParticipantsWithGroupedQuery() {
+        Session first = new Session().setId(18L).setUsers(new PersistentBag());
+        Session second = new Session().setId(19L).setUsers(new PersistentBag());
+
+        when(sessionRepository.countParticipants(Arrays.asList(18L, 19L)))
+                .thenReturn(Collections.singletonList(new Object[] {18L, 1200L}));
+
+        List<SessionDto> dtos = sessionMapper.toSummaryDto(Arrays.asList(first, second));
+
+        assertThat(dtos.get(0).getParticipantCount()).isEqualTo(1200);
+        assertThat(dtos.get(0).getUsers()).isNull();
+        assertThat(dtos.get(1).getParticipantCount()).isZero();
+        verify(sessionRepository, never()).findParticipantIds(any());
+    }
+
+    @Test
+    void shouldRenderOnlyRequestedFields() {
+        Tuple row = mock(Tuple.class);
+        when(row.get("id", Long.class)).thenReturn(20L);
+        when(row.get("id")).thenReturn(20L);
+        when(row.get("name")).thenReturn("Yoga");
+        when(sessionRepository.countParticipants(Collections.singletonList(20L)))
+                .thenReturn(Collections.singletonList(new Object[] {20L, 3L}));
+
+        List<Map<String, Object>> sessions = sessionMapper.toFields(Collections.singletonList(row),
+                Arrays.asList("participantCount", "id", "name"));
+
+        assertThat(sessions.get(0)).containsExactly(entry("id", 20L), entry("name", "Yoga"), entry("participantCount", 3));
+        verify(sessionRepository, never()).findParticipantIds(any());
+    }
+
+    @Test
+    void shouldRenderParticipantsFromJoinTable() {
+        Tuple row = mock(Tuple.class);
+        when(row.get("id", Long.class)).thenReturn(21L);
+        when(row.get("id")).thenReturn(21L);
+        when(sessionRepository.findParticipantIds(Collections.singletonList(21L)))
+                .thenReturn(Arrays.asList(new Object[] {21L, 5L}, new Object[] {21L, 6L}));
+
+        List<Map<String, Object>> sessions = sessionMapper.toFields(Collections.singletonList(row),
+                Arrays.asList("id", "users", "participantCount"));
+
+        assertThat(sessions.get(0)).containsEntry("users", Arrays.asList(5L, 6L)).containsEntry("participantCount", 2);
+        verify(sessionRepository, never()).countParticipants(any());
+    }
+
+    @Test
+    void shouldNotQueryJoinTableWhenParticipantsAreLoaded() {
+        User user = new User(); user.setId(4L);
+        Session session = new Session().setId(17L).setUsers(Collections.singletonList(user));
+
+        assertThat(sessionMapper.toDto(session).getUsers()).containsExactly(4L);
+        verifyNoInteractions(sessionRepository);
+    }
+
     @Test
     void shouldCallToStringOnBuilder() {
         Session.SessionBuilder builder = Session.builder()
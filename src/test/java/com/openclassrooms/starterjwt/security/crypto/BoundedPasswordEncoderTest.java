@@ -0,0 +1,87 @@
+package com.openclassrooms.starterjwt.security.crypto;
+
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class BoundedPasswordEncoderTest {
+
+    private BoundedPasswordEncoder encoder;
+
+    @AfterEach
+    void tearDown() {
+        encoder.destroy();
+    }
+
+    @Test
+    void shouldDelegateOnWorkerThreads() {
+        PasswordEncoder delegate = mock(PasswordEncoder.class);
+        when(delegate.encode("secret")).thenAnswer(invocation -> Thread.currentThread().getName());
+        when(delegate.matches("secret", "hash")).thenReturn(true);
+        when(delegate.upgradeEncoding("hash")).thenReturn(true);
+
+        encoder = new BoundedPasswordEncoder(delegate, 1, 1, 1);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        encoder.bindTo(registry);
+
+        assertTrue(encoder.encode("secret").startsWith("bcrypt-"));
+        assertTrue(encoder.matches("secret", "hash"));
+        assertTrue(encoder.upgradeEncoding("hash"));
+        assertEquals(2, registry.get("bcrypt.hash.latency").timer().count());
+    }
+
+    @Test
+    void shouldShedLoadWhenQueueIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder delegate = mock(PasswordEncoder.class);
+        when(delegate.matches(anyString(), anyString())).thenAnswer(invocation -> release.await(5, TimeUnit.SECONDS));
+
+        encoder = new BoundedPasswordEncoder(delegate, 1, 1, 3);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        encoder.bindTo(registry);
+
+        Thread running = new Thread(() -> encoder.matches("a", "hash"));
+        Thread queued = new Thread(() -> encoder.matches("b", "hash"));
+        running.start();
+        waitUntil(() -> encoder.getActiveCount() == 1);
+        queued.start();
+        waitUntil(() -> encoder.getQueueDepth() == 1);
+
+        ServiceUnavailableException e = assertThrows(ServiceUnavailableException.class,
+                () -> encoder.matches("c", "hash"));
+        assertEquals(3, e.getRetryAfterSeconds());
+        assertEquals(1.0, registry.get("bcrypt.rejected").counter().count());
+        assertEquals(1.0, registry.get("bcrypt.queue.depth").gauge().value());
+
+        release.countDown();
+        running.join();
+        queued.join();
+    }
+
+    @Test
+    void shouldPropagateDelegateExceptions() {
+        PasswordEncoder delegate = mock(PasswordEncoder.class);
+        when(delegate.encode(any())).thenThrow(new IllegalArgumentException("bad"));
+
+        encoder = new BoundedPasswordEncoder(delegate, 1, 1, 1);
+
+        assertThrows(IllegalArgumentException.class, () -> encoder.encode("secret"));
+    }
+
+    private void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not reached");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.openclassrooms.starterjwt.security.crypto;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CalibratedBCryptPasswordEncoderTest {
+
+    @Test
+    void upgradeEncoding_shouldRequestRehashForAnyOtherCost() {
+        CalibratedBCryptPasswordEncoder encoder = new CalibratedBCryptPasswordEncoder(5);
+
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("secret")));
+        assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(6).encode("secret")));
+        assertFalse(encoder.upgradeEncoding(encoder.encode("secret")));
+    }
+
+    @Test
+    void upgradeEncoding_shouldIgnoreNonBCryptValues() {
+        CalibratedBCryptPasswordEncoder encoder = new CalibratedBCryptPasswordEncoder(5);
+
+        assertFalse(encoder.upgradeEncoding(null));
+        assertFalse(encoder.upgradeEncoding("plain-text"));
+    }
+
+    @Test
+    void shouldMatchHashesOfOtherCosts() {
+        CalibratedBCryptPasswordEncoder encoder = new CalibratedBCryptPasswordEncoder(5);
+
+        assertTrue(encoder.matches("secret", new BCryptPasswordEncoder(4).encode("secret")));
+    }
+
+    @Test
+    void calibrate_shouldStayWithinBounds() {
+        assertEquals(4, CalibratedBCryptPasswordEncoder.calibrate(0, 4, 6));
+        assertEquals(6, CalibratedBCryptPasswordEncoder.calibrate(60000, 4, 6));
+    }
+}
@@ -1,6 +1,10 @@
 package com.openclassrooms.starterjwt.security.jwt;
 
+import com.openclassrooms.starterjwt.security.services.UserDenyList;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.mock.web.MockFilterChain;
@@ -14,6 +18,7 @@ import javax.servlet.ServletException;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.util.Collections;
+import java.util.Date;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
@@ -23,6 +28,8 @@ class AuthTokenFilterTest {
     private AuthTokenFilter authTokenFilter;
     private JwtUtils jwtUtils;
     private UserDetailsServiceImpl userDetailsService;
+    private UserDenyList userDenyList;
+    private RevokedTokenRegistry revokedTokenRegistry;
 
     @BeforeEach
     void setUp() {
@@ -32,8 +39,15 @@ class AuthTokenFilterTest {
         userDetailsService = mock(UserDetailsServiceImpl.class);
 
         injectField(authTokenFilter, "jwtUtils", jwtUtils);
+        injectField(authTokenFilter, "verifiedTokenCache", new VerifiedTokenCache(100));
         injectField(authTokenFilter, "userDetailsService", userDetailsService);
 
+        userDenyList = new UserDenyList(60000);
+        injectField(authTokenFilter, "userDenyList", userDenyList);
+
+        revokedTokenRegistry = new RevokedTokenRegistry(1000);
+        injectField(authTokenFilter, "revokedTokenRegistry", revokedTokenRegistry);
+
         SecurityContextHolder.clearContext();
     }
 
@@ -47,8 +61,7 @@ class AuthTokenFilterTest {
         MockHttpServletResponse response = new MockHttpServletResponse();
         MockFilterChain filterChain = new MockFilterChain();
 
-        when(jwtUtils.validateJwtToken(token)).thenReturn(true);
-        when(jwtUtils.getUserNameFromJwtToken(token)).thenReturn(username);
+        when(jwtUtils.parseJwtClaims(token)).thenReturn(claimsFor(username));
 
         UserDetails userDetails = new org.springframework.security.core.userdetails.User(
                 username, "password", Collections.emptyList());
@@ -63,6 +76,96 @@ class AuthTokenFilterTest {
         assertThat(auth.getPrincipal()).isEqualTo(userDetails);
     }
 
+    @Test
+    void testDoFilterInternal_withRepeatedJwt_verifiesSignatureOnce() throws ServletException, IOException {
+        String token = "repeated-jwt-token";
+        String username = "testuser";
+
+        when(jwtUtils.parseJwtClaims(token)).thenReturn(claimsFor(username));
+        when(userDetailsService.loadUserByUsername(username)).thenReturn(
+                new org.springframework.security.core.userdetails.User(username, "password", Collections.emptyList()));
+
+        for (int i = 0; i < 3; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest();
+            request.addHeader("Authorization", "Bearer " + token);
+            authTokenFilter.doFilterInternal(request, new MockHttpServletResponse(), new MockFilterChain());
+        }
+
+        verify(jwtUtils, times(1)).parseJwtClaims(token);
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNotNull();
+    }
+
+    @Test
+    void testDoFilterInternal_withInvalidJwt_leavesContextEmpty() throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer invalid");
+
+        when(jwtUtils.parseJwtClaims("invalid")).thenReturn(null);
+
+        authTokenFilter.doFilterInternal(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+        verifyNoInteractions(userDetailsService);
+    }
+
+    @Test
+    void testDoFilterInternal_claimsOnly_skipsUserLookup() throws ServletException, IOException {
+        String token = "claims-jwt-token";
+        Claims claims = claimsFor("yoga@studio.com");
+        UserDetailsImpl principal = UserDetailsImpl.builder().id(5L).username("yoga@studio.com").build();
+
+        injectField(authTokenFilter, "claimsOnly", true);
+        when(jwtUtils.parseJwtClaims(token)).thenReturn(claims);
+        when(jwtUtils.getUserDetailsFromJwtClaims(claims)).thenReturn(principal);
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + token);
+        authTokenFilter.doFilterInternal(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        assertThat(SecurityContextHolder.getContext().getAuthentication().getPrincipal()).isEqualTo(principal);
+        verifyNoInteractions(userDetailsService);
+    }
+
+    @Test
+    void testDoFilterInternal_claimsOnly_rejectsDeletedUser() throws ServletException, IOException {
+        String token = "deleted-user-token";
+        Claims claims = claimsFor("deleted@studio.com");
+
+        injectField(authTokenFilter, "claimsOnly", true);
+        userDenyList.deny(6L);
+        when(jwtUtils.parseJwtClaims(token)).thenReturn(claims);
+        when(jwtUtils.getUserDetailsFromJwtClaims(claims))
+                .thenReturn(UserDetailsImpl.builder().id(6L).username("deleted@studio.com").build());
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + token);
+        authTokenFilter.doFilterInternal(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+        verifyNoInteractions(userDetailsService);
+    }
+
+    @Test
+    void testDoFilterInternal_withRevokedJwt_leavesContextEmpty() throws ServletException, IOException {
+        String token = "revoked-jwt-token";
+        Claims claims = claimsFor("testuser").setId("revoked-jti");
+
+        when(jwtUtils.parseJwtClaims(token)).thenReturn(claims);
+        revokedTokenRegistry.revoke("revoked-jti", claims.getExpiration());
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + token);
+        authTokenFilter.doFilterInternal(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+        verifyNoInteractions(userDetailsService);
+    }
+
+    private Claims claimsFor(String username) {
+        return Jwts.claims()
+                .setSubject(username)
+                .setExpiration(new Date(System.currentTimeMillis() + 60000));
+    }
 
     private void injectField(Object target, String fieldName, Object value) {
         try {
@@ -0,0 +1,67 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SignatureException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HmacJwtSignerTest {
+
+    private static final String SECRET = "testSecretKey";
+
+    private final HmacJwtSigner signer = new HmacJwtSigner(SECRET);
+
+    @Test
+    void shouldVerifyTokensSignedWithTheRawSecret() {
+        String token = Jwts.builder()
+                .setSubject("yoga@studio.com")
+                .setExpiration(new Date(System.currentTimeMillis() + 60000))
+                .signWith(SignatureAlgorithm.HS512, SECRET)
+                .compact();
+
+        Claims claims = signer.parser().parseClaimsJws(token).getBody();
+
+        assertEquals("yoga@studio.com", claims.getSubject());
+    }
+
+    @Test
+    void shouldIssueTokensVerifiableWithTheRawSecret() {
+        String token = signer.builder()
+                .setSubject("yoga@studio.com")
+                .setExpiration(new Date(System.currentTimeMillis() + 60000))
+                .compact();
+
+        Claims claims = Jwts.parser().setSigningKey(SECRET).parseClaimsJws(token).getBody();
+
+        assertEquals("yoga@studio.com", claims.getSubject());
+        assertEquals("HS512", Jwts.parser().setSigningKey(SECRET).parseClaimsJws(token).getHeader().getAlgorithm());
+    }
+
+    @Test
+    void shouldRejectTokensSignedWithAnotherSecret() {
+        String token = new HmacJwtSigner("anotherSecretKey").builder()
+                .setSubject("yoga@studio.com")
+                .compact();
+
+        assertThrows(SignatureException.class, () -> signer.parser().parseClaimsJws(token));
+    }
+
+    @Test
+    void shouldSignConsistentlyAcrossThreads() throws InterruptedException {
+        String expected = signer.sign("header.payload");
+        String[] fromOtherThread = new String[1];
+
+        Thread thread = new Thread(() -> fromOtherThread[0] = signer.sign("header.payload"));
+        thread.start();
+        thread.join();
+
+        assertEquals(expected, fromOtherThread[0]);
+        assertTrue(signer.isValid("header.payload", expected));
+        assertFalse(signer.isValid("header.payload2", expected));
+    }
+}
@@ -1,6 +1,7 @@
 package com.openclassrooms.starterjwt.security.jwt;
 
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import io.jsonwebtoken.Claims;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -20,6 +21,7 @@ class JwtUtilsTest {
 
         injectField(jwtUtils, "jwtSecret", "testSecretKey");
         injectField(jwtUtils, "jwtExpirationMs", 3600000); // 1h
+        jwtUtils.init();
     }
 
     @Test
@@ -44,6 +46,52 @@ class JwtUtilsTest {
         assertEquals("testuser", username);
     }
 
+    @Test
+    void testParseJwtClaims() {
+        UserDetailsImpl userDetails = new UserDetailsImpl(1L, "testuser", "John", "Doe", false, "password");
+        String token = jwtUtils.generateJwtToken(
+                new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities()));
+
+        Claims claims = jwtUtils.parseJwtClaims(token);
+
+        assertNotNull(claims);
+        assertEquals("testuser", claims.getSubject());
+        assertNotNull(claims.getExpiration());
+        assertNull(jwtUtils.parseJwtClaims(token + "x"));
+    }
+
+    @Test
+    void testGenerateJwtToken_assignsUniqueTokenId() {
+        UserDetailsImpl userDetails = new UserDetailsImpl(1L, "testuser", "John", "Doe", false, "password");
+
+        Claims first = jwtUtils.parseJwtClaims(jwtUtils.generateJwtToken(userDetails));
+        Claims second = jwtUtils.parseJwtClaims(jwtUtils.generateJwtToken(userDetails));
+
+        assertNotNull(first.getId());
+        assertNotEquals(first.getId(), second.getId());
+    }
+
+    @Test
+    void testGetUserDetailsFromJwtClaims() {
+        UserDetailsImpl userDetails = new UserDetailsImpl(7L, "yoga@studio.com", "John", "Doe", true, "password");
+        String token = jwtUtils.generateJwtToken(
+                new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities()));
+
+        UserDetailsImpl principal = jwtUtils.getUserDetailsFromJwtClaims(jwtUtils.parseJwtClaims(token));
+
+        assertEquals(7L, principal.getId());
+        assertEquals("yoga@studio.com", principal.getUsername());
+        assertEquals("John", principal.getFirstName());
+        assertEquals("Doe", principal.getLastName());
+        assertTrue(principal.getAdmin());
+        assertNull(principal.getPassword());
+    }
+
+    @Test
+    void testGetUserDetailsFromJwtClaims_withoutEmbeddedClaims() {
+        assertNull(jwtUtils.getUserDetailsFromJwtClaims(io.jsonwebtoken.Jwts.claims().setSubject("yoga@studio.com")));
+    }
+
     @Test
     void testInvalidJwtToken() {
         String invalidToken = "invalid.token.value";
@@ -0,0 +1,58 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RevokedTokenRegistryTest {
+
+    @Test
+    void revoke_shouldRejectTokenUntilItExpires() throws InterruptedException {
+        RevokedTokenRegistry registry = new RevokedTokenRegistry(1000);
+
+        registry.revoke("jti-1", new Date(System.currentTimeMillis() + 50));
+
+        assertTrue(registry.isRevoked("jti-1"));
+        assertFalse(registry.isRevoked("jti-2"));
+
+        Thread.sleep(100);
+
+        assertFalse(registry.isRevoked("jti-1"));
+    }
+
+    @Test
+    void purgeExpired_shouldDropExpiredEntriesAndKeepLiveOnes() throws InterruptedException {
+        RevokedTokenRegistry registry = new RevokedTokenRegistry(1000);
+
+        registry.revoke("expired", new Date(System.currentTimeMillis() + 50));
+        registry.revoke("live", new Date(System.currentTimeMillis() + 60000));
+        Thread.sleep(100);
+
+        registry.purgeExpired();
+
+        assertEquals(1, registry.size());
+        assertTrue(registry.isRevoked("live"));
+        assertFalse(registry.isRevoked("expired"));
+    }
+
+    @Test
+    void bloomFilter_shouldNeverMissInsertedKeys() {
+        RevokedTokenRegistry.BloomFilter filter = new RevokedTokenRegistry.BloomFilter(10000, 0.01);
+
+        for (int i = 0; i < 10000; i++) {
+            filter.put("token-" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(filter.mightContain("token-" + i));
+            if (filter.mightContain("other-" + i)) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue(falsePositives < 300, "false positives: " + falsePositives);
+    }
+}
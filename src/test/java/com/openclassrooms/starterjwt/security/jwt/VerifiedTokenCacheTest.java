@@ -0,0 +1,53 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VerifiedTokenCacheTest {
+
+    private final VerifiedTokenCache cache = new VerifiedTokenCache(100);
+
+    @Test
+    void shouldReturnCachedClaimsForSameToken() {
+        Claims claims = Jwts.claims()
+                .setSubject("yoga@studio.com")
+                .setExpiration(new Date(System.currentTimeMillis() + 60000));
+
+        cache.put("token", claims);
+
+        assertSame(claims, cache.get("token"));
+        assertNull(cache.get("other-token"));
+    }
+
+    @Test
+    void shouldNotReturnExpiredClaims() {
+        Claims claims = Jwts.claims()
+                .setSubject("yoga@studio.com")
+                .setExpiration(new Date(System.currentTimeMillis() - 1000));
+
+        cache.put("token", claims);
+
+        assertNull(cache.get("token"));
+    }
+
+    @Test
+    void shouldNotCacheClaimsWithoutExpiration() {
+        cache.put("token", Jwts.claims().setSubject("yoga@studio.com"));
+
+        assertNull(cache.get("token"));
+    }
+
+    @Test
+    void invalidateAll_shouldClearEntries() {
+        cache.put("token", Jwts.claims().setExpiration(new Date(System.currentTimeMillis() + 60000)));
+
+        cache.invalidateAll();
+
+        assertNull(cache.get("token"));
+    }
+}
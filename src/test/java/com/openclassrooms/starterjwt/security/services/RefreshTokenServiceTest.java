@@ -0,0 +1,99 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import com.openclassrooms.starterjwt.models.RefreshToken;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.RefreshTokenRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class RefreshTokenServiceTest {
+
+    private RefreshTokenRepository refreshTokenRepository;
+    private UserRepository userRepository;
+    private RefreshTokenService refreshTokenService;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        refreshTokenRepository = mock(RefreshTokenRepository.class);
+        userRepository = mock(UserRepository.class);
+        refreshTokenService = new RefreshTokenService(refreshTokenRepository, userRepository, 60000);
+
+        user = User.builder()
+                .id(1L)
+                .email("yoga@studio.com")
+                .firstName("Yoga")
+                .lastName("Studio")
+                .password("hash")
+                .admin(false)
+                .build();
+        when(userRepository.getById(1L)).thenReturn(user);
+    }
+
+    @Test
+    void create_shouldStoreOnlyTheTokenHash() {
+        String token = refreshTokenService.create(1L);
+
+        ArgumentCaptor<RefreshToken> saved = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(refreshTokenRepository).save(saved.capture());
+
+        assertNotNull(token);
+        assertNotEquals(token, saved.getValue().getTokenHash());
+        assertEquals(user, saved.getValue().getUser());
+        assertTrue(saved.getValue().getExpiresAt().isAfter(LocalDateTime.now()));
+    }
+
+    @Test
+    void consume_shouldReturnOwnerOnlyOnce() {
+        String token = refreshTokenService.create(1L);
+        ArgumentCaptor<RefreshToken> saved = ArgumentCaptor.forClass(RefreshToken.class);
+        verify(refreshTokenRepository).save(saved.capture());
+        RefreshToken stored = saved.getValue().setId(7L);
+
+        when(refreshTokenRepository.findByTokenHash(stored.getTokenHash())).thenReturn(Optional.of(stored));
+        when(refreshTokenRepository.deleteTokenById(7L)).thenReturn(1, 0);
+
+        assertEquals(Optional.of(user), refreshTokenService.consume(token));
+        assertEquals(Optional.empty(), refreshTokenService.consume(token));
+    }
+
+    @Test
+    void consume_shouldRejectExpiredToken() {
+        RefreshToken expired = RefreshToken.builder()
+                .id(8L)
+                .user(user)
+                .expiresAt(LocalDateTime.now().minusSeconds(1))
+                .build();
+
+        when(refreshTokenRepository.findByTokenHash(anyString())).thenReturn(Optional.of(expired));
+        when(refreshTokenRepository.deleteTokenById(8L)).thenReturn(1);
+
+        assertEquals(Optional.empty(), refreshTokenService.consume("expired"));
+        verify(refreshTokenRepository).deleteTokenById(8L);
+    }
+
+    @Test
+    void consume_shouldRejectUnknownToken() {
+        when(refreshTokenRepository.findByTokenHash(anyString())).thenReturn(Optional.empty());
+
+        assertEquals(Optional.empty(), refreshTokenService.consume("unknown"));
+        verify(refreshTokenRepository, never()).deleteTokenById(any());
+    }
+
+    @Test
+    void revokeAll_shouldDeleteEveryTokenOfTheUser() {
+        refreshTokenService.revokeAll(1L);
+
+        verify(refreshTokenRepository).deleteByUserId(1L);
+    }
+}
@@ -0,0 +1,35 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserDenyListTest {
+
+    @Test
+    void deny_shouldRejectUserUntilRetentionElapses() throws InterruptedException {
+        UserDenyList denyList = new UserDenyList(50);
+
+        denyList.deny(1L);
+
+        assertTrue(denyList.isDenied(1L));
+        assertFalse(denyList.isDenied(2L));
+
+        Thread.sleep(100);
+
+        assertFalse(denyList.isDenied(1L));
+        assertEquals(0, denyList.size());
+    }
+
+    @Test
+    void deny_shouldPurgeEntriesOlderThanRetention() throws InterruptedException {
+        UserDenyList denyList = new UserDenyList(50);
+
+        denyList.deny(1L);
+        Thread.sleep(100);
+        denyList.deny(2L);
+
+        assertEquals(1, denyList.size());
+        assertTrue(denyList.isDenied(2L));
+    }
+}
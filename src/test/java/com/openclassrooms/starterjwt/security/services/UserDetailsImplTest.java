@@ -25,6 +25,7 @@ class UserDetailsImplTest {
         jwtUtils = new JwtUtils();
         setPrivateField(jwtUtils, "jwtSecret", jwtSecret);
         setPrivateField(jwtUtils, "jwtExpirationMs", jwtExpirationMs);
+        jwtUtils.init();
     }
 
     @Test
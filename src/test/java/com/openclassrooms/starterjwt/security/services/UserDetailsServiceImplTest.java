@@ -39,8 +39,71 @@ class UserDetailsServiceImplTest {
 
         assertEquals(user.getEmail(), userDetails.getUsername());
         assertNotNull(userDetails.getAuthorities());
+        assertFalse(((UserDetailsImpl) userDetails).getAdmin());
     }
 
+    @Test
+    void loadUserByUsername_shouldCarryAdminFlag() {
+        User admin = user(3L, "admin@example.com");
+        admin.setAdmin(true);
+        when(userRepository.findByEmail("admin@example.com")).thenReturn(Optional.of(admin));
+
+        UserDetailsImpl userDetails = (UserDetailsImpl) userDetailsService.loadUserByUsername("admin@example.com");
+
+        assertTrue(userDetails.getAdmin());
+    }
+
+    @Test
+    void loadUserByUsername_shouldServeRepeatedLookupsFromCache() {
+        when(userRepository.findByEmail("email@example.com")).thenReturn(Optional.of(user(1L, "email@example.com")));
+
+        UserDetails first = userDetailsService.loadUserByUsername("email@example.com");
+        UserDetails second = userDetailsService.loadUserByUsername("EMAIL@example.com");
+
+        assertSame(first, second);
+        verify(userRepository, times(1)).findByEmail(anyString());
+        assertEquals(1, userDetailsService.stats().hitCount());
+        assertEquals(1, userDetailsService.stats().missCount());
+    }
+
+    @Test
+    void evict_shouldForceReloadByUsernameOrId() {
+        when(userRepository.findByEmail("email@example.com")).thenReturn(Optional.of(user(1L, "email@example.com")));
+
+        userDetailsService.loadUserByUsername("email@example.com");
+        userDetailsService.evict("email@example.com");
+        userDetailsService.loadUserByUsername("email@example.com");
+        userDetailsService.evict(1L);
+        userDetailsService.loadUserByUsername("email@example.com");
+
+        verify(userRepository, times(3)).findByEmail("email@example.com");
+    }
+
+    @Test
+    void loadUserByUsername_shouldNotCacheMissingUsers() {
+        when(userRepository.findByEmail("late@example.com"))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(user(2L, "late@example.com")));
+
+        assertThrows(UsernameNotFoundException.class, () ->
+                userDetailsService.loadUserByUsername("late@example.com"));
+        assertEquals("late@example.com", userDetailsService.loadUserByUsername("late@example.com").getUsername());
+    }
+
+    @Test
+    void updatePassword_shouldWriteBackAndEvict() {
+        when(userRepository.findByEmail("email@example.com")).thenReturn(Optional.of(user(1L, "email@example.com")));
+        UserDetails current = userDetailsService.loadUserByUsername("email@example.com");
+
+        UserDetails updated = userDetailsService.updatePassword(current, "rehashed");
+
+        verify(userRepository).updatePasswordByEmail("email@example.com", "rehashed");
+        assertEquals("rehashed", updated.getPassword());
+        assertEquals(1L, ((UserDetailsImpl) updated).getId());
+
+        userDetailsService.loadUserByUsername("email@example.com");
+        verify(userRepository, times(2)).findByEmail("email@example.com");
+    }
 
     @Test
     void loadUserByUsername_whenUserDoesNotExist_shouldThrowException() {
@@ -50,4 +113,10 @@ class UserDetailsServiceImplTest {
         assertThrows(UsernameNotFoundException.class, () ->
                 userDetailsService.loadUserByUsername("notfound@example.com"));
     }
+
+    private User user(Long id, String email) {
+        User user = new User(email, "Sobrenome", "Nome", "senha", false);
+        user.setId(id);
+        return user;
+    }
 }
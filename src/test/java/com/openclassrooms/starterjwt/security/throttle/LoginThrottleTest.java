@@ -0,0 +1,35 @@
+package com.openclassrooms.starterjwt.security.throttle;
+
+import com.openclassrooms.starterjwt.exception.TooManyRequestsException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoginThrottleTest {
+
+    @Test
+    void check_shouldThrottlePerEmail() {
+        LoginThrottle throttle = new LoginThrottle(100, 60, 2, 60, 1000);
+
+        throttle.check("yoga@studio.com", "10.0.0.1");
+        throttle.check("YOGA@studio.com", "10.0.0.2");
+
+        TooManyRequestsException e = assertThrows(TooManyRequestsException.class,
+                () -> throttle.check("yoga@studio.com", "10.0.0.3"));
+        assertEquals(1, e.getRetryAfterSeconds());
+        assertDoesNotThrow(() -> throttle.check("other@studio.com", "10.0.0.3"));
+    }
+
+    @Test
+    void check_shouldThrottlePerClientAddress() {
+        LoginThrottle throttle = new LoginThrottle(2, 1, 100, 60, 1000);
+
+        throttle.check("a@studio.com", "10.0.0.1");
+        throttle.check("b@studio.com", "10.0.0.1");
+
+        TooManyRequestsException e = assertThrows(TooManyRequestsException.class,
+                () -> throttle.check("c@studio.com", "10.0.0.1"));
+        assertEquals(60, e.getRetryAfterSeconds());
+        assertDoesNotThrow(() -> throttle.check("c@studio.com", "10.0.0.2"));
+    }
+}
@@ -0,0 +1,64 @@
+package com.openclassrooms.starterjwt.security.throttle;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketLimiterTest {
+
+    private static final long ONE_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    void tryAcquire_shouldAllowBurstThenReportWait() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(2, ONE_SECOND, 100, 4, now::get);
+
+        assertEquals(0, limiter.tryAcquire("client"));
+        assertEquals(0, limiter.tryAcquire("client"));
+
+        long wait = limiter.tryAcquire("client");
+        assertEquals(ONE_SECOND, wait);
+        assertEquals(0, limiter.tryAcquire("other-client"));
+    }
+
+    @Test
+    void tryAcquire_shouldRefillOverTime() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(1, ONE_SECOND, 100, 4, now::get);
+
+        assertEquals(0, limiter.tryAcquire("client"));
+        assertTrue(limiter.tryAcquire("client") > 0);
+
+        now.addAndGet(ONE_SECOND);
+
+        assertEquals(0, limiter.tryAcquire("client"));
+    }
+
+    @Test
+    void tryAcquire_shouldEvictIdleBuckets() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(2, ONE_SECOND, 100, 1, now::get);
+
+        limiter.tryAcquire("a");
+        limiter.tryAcquire("b");
+        assertEquals(2, limiter.size());
+
+        now.addAndGet(3 * ONE_SECOND);
+        limiter.tryAcquire("c");
+
+        assertEquals(1, limiter.size());
+    }
+
+    @Test
+    void tryAcquire_shouldBoundTheNumberOfBuckets() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(2, ONE_SECOND, 8, 2, now::get);
+
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire("client-" + i);
+        }
+
+        assertTrue(limiter.size() <= 8);
+    }
+}
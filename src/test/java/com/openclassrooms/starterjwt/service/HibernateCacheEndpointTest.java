@@ -0,0 +1,38 @@
+package com.openclassrooms.starterjwt.service;
+
+import com.openclassrooms.starterjwt.services.HibernateCacheEndpoint;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class HibernateCacheEndpointTest {
+
+    @Test
+    void regions_shouldReportHitRatioPerRegion() {
+        EntityManagerFactory entityManagerFactory = mock(EntityManagerFactory.class);
+        SessionFactory sessionFactory = mock(SessionFactory.class);
+        Statistics statistics = mock(Statistics.class);
+        CacheRegionStatistics sessions = mock(CacheRegionStatistics.class);
+
+        when(entityManagerFactory.unwrap(SessionFactory.class)).thenReturn(sessionFactory);
+        when(sessionFactory.getStatistics()).thenReturn(statistics);
+        when(statistics.getSecondLevelCacheRegionNames()).thenReturn(new String[] {"sessions", "default-update-timestamps-region"});
+        when(statistics.getCacheRegionStatistics("sessions")).thenReturn(sessions);
+        when(statistics.getCacheRegionStatistics("default-update-timestamps-region")).thenThrow(new IllegalArgumentException());
+        when(sessions.getHitCount()).thenReturn(3L);
+        when(sessions.getMissCount()).thenReturn(1L);
+
+        Map<String, Map<String, Object>> regions = new HibernateCacheEndpoint(entityManagerFactory).regions();
+
+        assertEquals(1, regions.size());
+        assertEquals(3L, regions.get("sessions").get("hitCount"));
+        assertEquals(0.75, regions.get("sessions").get("hitRatio"));
+    }
+}
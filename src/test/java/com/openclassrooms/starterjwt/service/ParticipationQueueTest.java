@@ -0,0 +1,88 @@
+package com.openclassrooms.starterjwt.service;
+
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
+import com.openclassrooms.starterjwt.services.ParticipationQueue;
+import com.openclassrooms.starterjwt.services.SessionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ParticipationQueueTest {
+    private SessionService sessionService;
+
+    private SimpleMeterRegistry registry;
+
+    private ParticipationQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        sessionService = mock(SessionService.class);
+        registry = new SimpleMeterRegistry();
+        queue = new ParticipationQueue(sessionService, true, 3, 10, 1);
+        queue.bindTo(registry);
+    }
+
+    @Test
+    void flush_shouldKeepOnlyTheLastChangeOfEachPair() {
+        queue.enqueue(1L, 10L, true);
+        queue.enqueue(1L, 10L, false);
+        queue.enqueue(2L, 10L, true);
+        when(sessionService.applyParticipationChanges(any())).thenReturn(1);
+
+        queue.flush();
+
+        Map<Long, Map<Long, Boolean>> expected = new HashMap<>();
+        expected.put(1L, Collections.singletonMap(10L, false));
+        expected.put(2L, Collections.singletonMap(10L, true));
+        verify(sessionService).applyParticipationChanges(expected);
+        assertEquals(0, queue.getDepth());
+        assertEquals(1.0, registry.get("participation.queue.dropped").counter().count());
+        assertEquals(1L, registry.get("participation.queue.flush").timer().count());
+    }
+
+    @Test
+    void flush_shouldPutTheChangesBack_whenTheWriteFails() {
+        queue.enqueue(1L, 10L, true);
+        when(sessionService.applyParticipationChanges(any())).thenThrow(new IllegalStateException("down"));
+
+        queue.flush();
+
+        assertEquals(1, queue.getDepth());
+        assertEquals(1.0, registry.get("participation.queue.depth").gauge().value());
+    }
+
+    @Test
+    void enqueue_shouldFailFast_whenFull() {
+        queue.enqueue(1L, 10L, true);
+        queue.enqueue(1L, 11L, true);
+        queue.enqueue(1L, 12L, true);
+
+        assertThrows(ServiceUnavailableException.class, () -> queue.enqueue(1L, 13L, true));
+        // a pending pair can still change
+        queue.enqueue(1L, 12L, false);
+        assertEquals(3, queue.getDepth());
+    }
+
+    @Test
+    void destroy_shouldDrainAndRejectNewChanges() {
+        queue.enqueue(1L, 10L, true);
+        when(sessionService.applyParticipationChanges(any())).thenReturn(1);
+
+        queue.destroy();
+
+        Map<Long, Map<Long, Boolean>> expected = new LinkedHashMap<>();
+        expected.put(1L, Collections.singletonMap(10L, true));
+        verify(sessionService).applyParticipationChanges(expected);
+        assertEquals(0, queue.getDepth());
+        assertThrows(ServiceUnavailableException.class, () -> queue.enqueue(1L, 11L, true));
+    }
+}
@@ -0,0 +1,150 @@
+package com.openclassrooms.starterjwt.service;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.mapper.SessionMapper;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.services.SessionCalendarIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SessionCalendarIndexTest {
+
+    private static final long HOUR = 3600000L;
+
+    private SessionRepository sessionRepository;
+    private SessionMapper sessionMapper;
+    private SessionCalendarIndex index;
+    private long now;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        sessionRepository = mock(SessionRepository.class);
+        sessionMapper = mock(SessionMapper.class);
+        index = new SessionCalendarIndex(sessionRepository, sessionMapper);
+        now = System.currentTimeMillis();
+
+        List<Session> sessions = Arrays.asList(session(1L, now + 3 * HOUR), session(2L, now + HOUR), session(3L, now + HOUR));
+        when(sessionRepository.findAll(any(Specification.class))).thenReturn(sessions);
+        when(sessionMapper.toDto(anyList())).thenAnswer(invocation -> ((List<Session>) invocation.getArgument(0))
+                .stream().map(SessionCalendarIndexTest::dto).collect(Collectors.toList()));
+        when(sessionMapper.toDto(any(Session.class))).thenAnswer(invocation -> dto(invocation.getArgument(0)));
+
+        index.load();
+    }
+
+    @Test
+    void upcoming_shouldReturnSessionsInDateThenIdOrderFromMemory() {
+        List<SessionDto> upcoming = index.upcoming(new Date(now), 10);
+
+        assertEquals(Arrays.asList(2L, 3L, 1L), ids(upcoming));
+        assertEquals(Arrays.asList(2L, 3L), ids(index.upcoming(new Date(now), 2)));
+        assertEquals(Collections.singletonList(1L), ids(index.upcoming(new Date(now + 2 * HOUR), 10)));
+        verify(sessionRepository, never()).findSlice(any(), anyInt());
+    }
+
+    @Test
+    void put_shouldMoveRescheduledSession() {
+        index.put(session(2L, now + 5 * HOUR));
+        index.put(session(4L, now + 2 * HOUR));
+
+        assertEquals(Arrays.asList(3L, 4L, 1L, 2L), ids(index.upcoming(new Date(now), 10)));
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reload_shouldPickUpSessionsWrittenElsewhere() {
+        when(sessionRepository.findAll(any(Specification.class)))
+                .thenReturn(Arrays.asList(session(1L, now + 3 * HOUR), session(5L, now + 2 * HOUR)));
+
+        index.reload();
+
+        assertEquals(Arrays.asList(5L, 1L), ids(index.upcoming(new Date(now), 10)));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void remove_shouldDropSession() {
+        index.remove(3L);
+
+        assertEquals(Arrays.asList(2L, 1L), ids(index.upcoming(new Date(now), 10)));
+    }
+
+    @Test
+    void removeParticipant_shouldReplaceAffectedSessions() {
+        SessionDto before = index.upcoming(new Date(now), 1).get(0);
+
+        index.removeParticipant(7L);
+
+        SessionDto after = index.upcoming(new Date(now), 1).get(0);
+        assertEquals(Collections.singletonList(8L), after.getUsers());
+        assertEquals(1, after.getParticipantCount());
+        assertEquals(Arrays.asList(7L, 8L), before.getUsers());
+    }
+
+    @Test
+    void addAndRemoveParticipant_shouldOnlyChangeThatSession() {
+        index.addParticipant(2L, 9L);
+        index.removeParticipant(3L, 7L);
+        index.addParticipant(42L, 9L);
+
+        List<SessionDto> upcoming = index.upcoming(new Date(now), 10);
+        assertEquals(Arrays.asList(7L, 8L, 9L), upcoming.get(0).getUsers());
+        assertEquals(3, upcoming.get(0).getParticipantCount());
+        assertEquals(Collections.singletonList(8L), upcoming.get(1).getUsers());
+        assertEquals(Arrays.asList(7L, 8L), upcoming.get(2).getUsers());
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void upcoming_shouldQueryDatabaseBeforeIndexedRange() {
+        when(sessionRepository.findSlice(any(), eq(5))).thenReturn(new SliceImpl<>(Collections.emptyList()));
+
+        index.upcoming(new Date(now - 48 * HOUR), 5);
+
+        verify(sessionRepository).findSlice(any(), eq(5));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void load_shouldFallBackToDatabase_whenItCannotBeRead() {
+        SessionCalendarIndex unloaded = new SessionCalendarIndex(sessionRepository, sessionMapper);
+        when(sessionRepository.findAll(any(Specification.class))).thenThrow(new IllegalStateException("down"));
+        when(sessionRepository.findSlice(any(), eq(5))).thenReturn(new SliceImpl<>(Collections.emptyList()));
+
+        unloaded.load();
+        index.load();
+
+        unloaded.upcoming(new Date(now), 5);
+        verify(sessionRepository).findSlice(any(), eq(5));
+        assertEquals(3, index.size());
+    }
+
+    private static Session session(Long id, long date) {
+        return new Session().setId(id).setDate(new Date(date));
+    }
+
+    private static SessionDto dto(Session session) {
+        return new SessionDto(session.getId(), "Session " + session.getId(), session.getDate(), null, "",
+                new ArrayList<>(Arrays.asList(7L, 8L)), 2, null, null, null);
+    }
+
+    private static List<Long> ids(List<SessionDto> sessions) {
+        return sessions.stream().map(SessionDto::getId).collect(Collectors.toList());
+    }
+}
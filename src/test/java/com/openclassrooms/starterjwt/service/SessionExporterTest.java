@@ -0,0 +1,70 @@
+package com.openclassrooms.starterjwt.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.repository.SessionExportRepository;
+import com.openclassrooms.starterjwt.services.SessionExporter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class SessionExporterTest {
+
+    private final SessionExportRepository sessionExportRepository = mock(SessionExportRepository.class);
+
+    private final SessionExporter sessionExporter = new SessionExporter(sessionExportRepository, new ObjectMapper());
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void writeAll_shouldWriteEachSessionAsItIsRead() throws IOException {
+        SessionDto first = new SessionDto(1L, "Hatha", null, 2L, "Slow", Arrays.asList(3L, 4L), 2, 10, null, null);
+        SessionDto second = new SessionDto(5L, "Vinyasa", null, null, "Flow", Collections.emptyList(), 0, null, null, null);
+        doAnswer(invocation -> {
+            Consumer<SessionDto> consumer = invocation.getArgument(0);
+            consumer.accept(first);
+            consumer.accept(second);
+            return null;
+        }).when(sessionExportRepository).forEach(any(Consumer.class));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        sessionExporter.writeAll(out);
+
+        assertEquals(new ObjectMapper().writeValueAsString(Arrays.asList(first, second)), out.toString("UTF-8"));
+    }
+
+    @Test
+    void writeAll_shouldWriteEmptyArrayWithoutSessions() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        sessionExporter.writeAll(out);
+
+        assertEquals("[]", out.toString("UTF-8"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void writeAll_shouldPropagateClientDisconnection() {
+        doAnswer(invocation -> {
+            ((Consumer<SessionDto>) invocation.getArgument(0)).accept(new SessionDto());
+            return null;
+        }).when(sessionExportRepository).forEach(any(Consumer.class));
+
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        assertThrows(IOException.class, () -> sessionExporter.writeAll(broken));
+    }
+}
@@ -0,0 +1,68 @@
+package com.openclassrooms.starterjwt.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.services.SessionListCache;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionListCacheTest {
+
+    @Test
+    void get_shouldLoadOncePerVersion() {
+        SessionListCache cache = new SessionListCache(new ObjectMapper(), false);
+        AtomicInteger loads = new AtomicInteger();
+
+        SessionListCache.Body first = cache.get(() -> Arrays.asList(loads.incrementAndGet()));
+        SessionListCache.Body second = cache.get(() -> Arrays.asList(loads.incrementAndGet()));
+
+        assertSame(first, second);
+        assertEquals("[1]", new String(first.getJson()));
+        assertNull(first.getGzip());
+
+        cache.bump();
+        SessionListCache.Body third = cache.get(() -> Arrays.asList(loads.incrementAndGet()));
+
+        assertEquals("[2]", new String(third.getJson()));
+        assertNotEquals(first.getEtag(false), third.getEtag(false));
+    }
+
+    @Test
+    void get_shouldPrecompressBodyWithItsOwnEtag() throws IOException {
+        SessionListCache cache = new SessionListCache(new ObjectMapper(), true);
+
+        SessionListCache.Body body = cache.get(() -> Arrays.asList("hatha", "vinyasa"));
+
+        assertArrayEquals(body.getJson(), gunzip(body.getGzip()));
+        assertTrue(body.getEtag(false).startsWith("\""));
+        assertTrue(body.getEtag(true).endsWith("-gzip\""));
+        assertNotEquals(body.getEtag(false), body.getEtag(true));
+    }
+
+    @Test
+    void etag_shouldDifferBetweenInstances() {
+        SessionListCache first = new SessionListCache(new ObjectMapper(), false);
+        SessionListCache second = new SessionListCache(new ObjectMapper(), false);
+
+        assertNotEquals(first.get(() -> "[]").getEtag(false), second.get(() -> "[]").getEtag(false));
+    }
+
+    private static byte[] gunzip(byte[] gzip) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[256];
+            for (int read; (read = in.read(buffer)) > 0; ) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -1,16 +1,29 @@
 package com.openclassrooms.starterjwt.service;
 
+import com.openclassrooms.starterjwt.dto.EnrolmentResultDto;
 import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.ConflictException;
 import com.openclassrooms.starterjwt.exception.NotFoundException;
 
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.SessionSpecifications;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.services.SessionCalendarIndex;
+import com.openclassrooms.starterjwt.services.SessionListCache;
 import com.openclassrooms.starterjwt.services.SessionService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.*;
 
@@ -25,6 +38,12 @@ class SessionServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private SessionListCache sessionListCache;
+
+    @Mock
+    private SessionCalendarIndex sessionCalendarIndex;
+
     @InjectMocks
     private SessionService sessionService;
 
@@ -44,6 +63,8 @@ class SessionServiceTest {
 
         assertEquals(1L, saved.getId());
         verify(sessionRepository).save(session);
+        verify(sessionListCache).bump();
+        verify(sessionCalendarIndex).put(session);
     }
 
     @Test
@@ -55,6 +76,8 @@ class SessionServiceTest {
         sessionService.delete(id);
 
         verify(sessionRepository).deleteById(id);
+        verify(sessionListCache).bump();
+        verify(sessionCalendarIndex).remove(id);
     }
 
     @Test
@@ -68,6 +91,86 @@ class SessionServiceTest {
         verify(sessionRepository).findAll();
     }
 
+    @Test
+    void findAll_shouldApplyFilterInDateOrder() {
+        Specification<Session> filter = SessionSpecifications.teacherId(3L);
+        when(sessionRepository.findAll(filter, Sort.by("date", "id"))).thenReturn(Collections.singletonList(new Session()));
+
+        assertEquals(1, sessionService.findAll(filter).size());
+    }
+
+    @Test
+    void findPage_shouldCapSize() {
+        ReflectionTestUtils.setField(sessionService, "maxPageSize", 50);
+        when(sessionRepository.findSlice(any(), eq(50)))
+                .thenReturn(new SliceImpl<>(Collections.singletonList(new Session())));
+
+        assertEquals(1, sessionService.findPage(null, null, null, 1000).getContent().size());
+        verify(sessionRepository).findSlice(any(), eq(50));
+    }
+
+    @Test
+    void findPage_shouldUseRequestedSizeBelowCap() {
+        ReflectionTestUtils.setField(sessionService, "maxPageSize", 50);
+        when(sessionRepository.findSlice(any(), eq(10))).thenReturn(new SliceImpl<>(Collections.emptyList()));
+
+        sessionService.findPage(SessionSpecifications.teacherId(3L), new Date(), 7L, 10);
+
+        verify(sessionRepository).findSlice(any(), eq(10));
+    }
+
+    @Test
+    void findFields_shouldSelectOnlySessionColumns() {
+        ReflectionTestUtils.setField(sessionService, "maxPageSize", 50);
+        when(sessionRepository.findColumns(any(), eq(Arrays.asList("id", "name")), eq(50)))
+                .thenReturn(new SliceImpl<>(Collections.emptyList()));
+
+        sessionService.findFields(null, new Date(), 7L, 1000, Arrays.asList("id", "name", "participantCount"));
+
+        verify(sessionRepository).findColumns(any(), eq(Arrays.asList("id", "name")), eq(50));
+    }
+
+    @Test
+    void findFields_shouldReturnWholeListWithoutSize() {
+        when(sessionRepository.findColumns(any(), eq(Collections.singletonList("id")), isNull()))
+                .thenReturn(new SliceImpl<>(Collections.emptyList()));
+
+        sessionService.findFields(SessionSpecifications.teacherId(3L), null, null, null, Arrays.asList("id", "users"));
+
+        verify(sessionRepository).findColumns(any(), eq(Collections.singletonList("id")), isNull());
+    }
+
+    @Test
+    void findUpcoming_shouldCapLimit() {
+        ReflectionTestUtils.setField(sessionService, "maxPageSize", 50);
+        Date from = new Date();
+        when(sessionCalendarIndex.upcoming(from, 50)).thenReturn(Collections.emptyList());
+
+        assertTrue(sessionService.findUpcoming(from, 500).isEmpty());
+        verify(sessionCalendarIndex).upcoming(from, 50);
+        verifyNoInteractions(sessionRepository);
+    }
+
+    @Test
+    void findParticipantIds_shouldPageAfterCursor() {
+        ReflectionTestUtils.setField(sessionService, "maxPageSize", 50);
+        when(sessionRepository.existsById(1L)).thenReturn(true);
+        when(sessionRepository.findParticipantIdsAfter(1L, 4L, PageRequest.of(0, 3)))
+                .thenReturn(Arrays.<Number>asList(5L, 6L, 7L));
+
+        Slice<Long> page = sessionService.findParticipantIds(1L, 4L, 2);
+
+        assertEquals(Arrays.asList(5L, 6L), page.getContent());
+        assertTrue(page.hasNext());
+    }
+
+    @Test
+    void findParticipantIds_shouldThrowNotFoundException_whenSessionDoesNotExist() {
+        when(sessionRepository.existsById(1L)).thenReturn(false);
+
+        assertThrows(NotFoundException.class, () -> sessionService.findParticipantIds(1L, null, 20));
+    }
+
     @Test
     void getById_shouldReturnSession_whenExists() {
         Session session = new Session();
@@ -101,107 +204,286 @@ class SessionServiceTest {
         assertEquals(session, updated);
         assertEquals(1L, session.getId());
         verify(sessionRepository).save(session);
+        verify(sessionRepository).recountSeats(1L);
+        verify(sessionListCache).bump();
     }
 
     @Test
-    void participate_shouldAddUserToSession() {
-        Long sessionId = 1L;
-        Long userId = 10L;
+    void update_shouldLockTheSessionBeforeSaving() {
+        Session session = new Session();
+        when(sessionRepository.save(any(Session.class))).thenReturn(session);
 
-        User user = new User();
-        user.setId(userId);
+        sessionService.update(1L, session);
 
-        Session session = new Session();
-        session.setId(sessionId);
-        session.setUsers(new ArrayList<>());
+        InOrder inOrder = inOrder(sessionRepository);
+        inOrder.verify(sessionRepository).findAllByIdForUpdate(Collections.singletonList(1L));
+        inOrder.verify(sessionRepository).save(session);
+        inOrder.verify(sessionRepository).flush();
+        inOrder.verify(sessionRepository).recountSeats(1L);
+    }
 
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
-        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
-        when(sessionRepository.save(any(Session.class))).thenReturn(session);
+    @Test
+    void createAndUpdate_shouldRejectMoreParticipantsThanCapacity() {
+        Session session = new Session().setCapacity(1)
+                .setUsers(Arrays.asList(new User().setId(10L), new User().setId(11L)));
 
-        sessionService.participate(sessionId, userId);
+        assertThrows(BadRequestException.class, () -> sessionService.create(session));
+        assertThrows(BadRequestException.class, () -> sessionService.update(1L, session));
+        verifyNoInteractions(sessionRepository);
+    }
 
-        assertTrue(session.getUsers().contains(user));
-        verify(sessionRepository).save(session);
+    @Test
+    void create_shouldRecountSeats_whenCreatedWithParticipants() {
+        Session session = new Session().setId(1L).setCapacity(2).setUsers(Collections.singletonList(new User().setId(10L)));
+        when(sessionRepository.save(session)).thenReturn(session);
+
+        sessionService.create(session);
+
+        InOrder inOrder = inOrder(sessionRepository);
+        inOrder.verify(sessionRepository).save(session);
+        inOrder.verify(sessionRepository).flush();
+        inOrder.verify(sessionRepository).recountSeats(1L);
+    }
+
+    @Test
+    void participate_shouldInsertSingleRow() {
+        when(sessionRepository.existsById(1L)).thenReturn(true);
+        when(userRepository.existsById(10L)).thenReturn(true);
+        when(sessionRepository.addParticipant(1L, 10L)).thenReturn(1);
+        when(sessionRepository.takeSeat(1L)).thenReturn(1);
+
+        sessionService.participate(1L, 10L);
+
+        InOrder inOrder = inOrder(sessionRepository);
+        inOrder.verify(sessionRepository).takeSeat(1L);
+        inOrder.verify(sessionRepository).addParticipant(1L, 10L);
+        verify(sessionRepository, never()).save(any(Session.class));
+        verify(sessionCalendarIndex).addParticipant(1L, 10L);
+        verify(sessionListCache).bump();
+    }
+
+    @Test
+    void participate_shouldUpdateTheViewsOnlyOnceCommitted() {
+        when(sessionRepository.existsById(1L)).thenReturn(true);
+        when(userRepository.existsById(10L)).thenReturn(true);
+        when(sessionRepository.takeSeat(1L)).thenReturn(1);
+        when(sessionRepository.addParticipant(1L, 10L)).thenReturn(1);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            sessionService.participate(1L, 10L);
+
+            verify(sessionListCache, never()).bump();
+            verify(sessionCalendarIndex, never()).addParticipant(anyLong(), anyLong());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(sessionListCache).bump();
+        verify(sessionCalendarIndex).addParticipant(1L, 10L);
     }
 
     @Test
     void participate_shouldThrowNotFoundException_whenSessionOrUserNotFound() {
-        when(sessionRepository.findById(anyLong())).thenReturn(Optional.empty());
+        when(sessionRepository.existsById(1L)).thenReturn(false);
 
         assertThrows(NotFoundException.class, () -> sessionService.participate(1L, 1L));
 
-        User user = new User();
-        user.setId(1L);
-        when(sessionRepository.findById(1L)).thenReturn(Optional.of(new Session()));
-        when(userRepository.findById(1L)).thenReturn(Optional.empty());
+        when(sessionRepository.existsById(1L)).thenReturn(true);
+        when(userRepository.existsById(1L)).thenReturn(false);
 
         assertThrows(NotFoundException.class, () -> sessionService.participate(1L, 1L));
+        verify(sessionRepository, never()).addParticipant(anyLong(), anyLong());
     }
 
     @Test
     void participate_shouldThrowBadRequestException_whenUserAlreadyParticipates() {
-        Long sessionId = 1L;
-        Long userId = 10L;
+        when(sessionRepository.existsById(1L)).thenReturn(true);
+        when(userRepository.existsById(10L)).thenReturn(true);
+        when(sessionRepository.takeSeat(1L)).thenReturn(1);
+        when(sessionRepository.addParticipant(1L, 10L)).thenReturn(0);
 
-        User user = new User();
-        user.setId(userId);
+        assertThrows(BadRequestException.class, () -> sessionService.participate(1L, 10L));
+        verify(sessionListCache, never()).bump();
+    }
 
-        Session session = new Session();
-        session.setId(sessionId);
-        session.setUsers(new ArrayList<>(Arrays.asList(user)));
+    @Test
+    void participate_shouldThrowConflictException_whenSessionIsFull() {
+        when(sessionRepository.existsById(1L)).thenReturn(true);
+        when(userRepository.existsById(10L)).thenReturn(true);
+        when(sessionRepository.takeSeat(1L)).thenReturn(0);
+
+        assertThrows(ConflictException.class, () -> sessionService.participate(1L, 10L));
+        verify(sessionRepository, never()).addParticipant(anyLong(), anyLong());
+        verify(sessionCalendarIndex, never()).addParticipant(anyLong(), anyLong());
+        verify(sessionListCache, never()).bump();
+    }
 
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
-        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+    @Test
+    @SuppressWarnings("unchecked")
+    void participateAll_shouldReportEachUserAndBatchTheEnrolments() {
+        ReflectionTestUtils.setField(sessionService, "maxBulkSize", 10);
+        Session session = new Session().setId(1L).setCapacity(3).setSeatsTaken(1);
+        List<Long> userIds = Arrays.asList(10L, 11L, 12L, 13L, 14L, 10L);
+
+        when(sessionRepository.findAllByIdForUpdate(Collections.singletonList(1L))).thenReturn(Collections.singletonList(session));
+        when(userRepository.findExistingIds(userIds)).thenReturn(Arrays.asList(10L, 11L, 12L, 13L));
+        when(sessionRepository.findParticipations(any(), any())).thenReturn(Collections.singletonList(new Object[] {1L, 11L}));
+
+        List<EnrolmentResultDto> results = sessionService.participateAll(1L, userIds);
+
+        assertEquals(Arrays.asList(
+                new EnrolmentResultDto(1L, 10L, EnrolmentResultDto.Status.ENROLLED),
+                new EnrolmentResultDto(1L, 11L, EnrolmentResultDto.Status.ALREADY_PARTICIPATING),
+                new EnrolmentResultDto(1L, 12L, EnrolmentResultDto.Status.ENROLLED),
+                new EnrolmentResultDto(1L, 13L, EnrolmentResultDto.Status.FULL),
+                new EnrolmentResultDto(1L, 14L, EnrolmentResultDto.Status.NOT_FOUND)), results);
+
+        ArgumentCaptor<Map<Long, List<Long>>> enrolments = ArgumentCaptor.forClass(Map.class);
+        verify(sessionRepository).enrol(enrolments.capture());
+        assertEquals(Collections.singletonMap(1L, Arrays.asList(10L, 12L)), enrolments.getValue());
+        verify(sessionCalendarIndex).addParticipant(1L, 12L);
+        verify(sessionListCache).bump();
+    }
 
-        assertThrows(BadRequestException.class, () -> sessionService.participate(sessionId, userId));
+    @Test
+    void participateAll_shouldThrowNotFoundException_whenSessionNotFound() {
+        ReflectionTestUtils.setField(sessionService, "maxBulkSize", 10);
+        when(sessionRepository.findAllByIdForUpdate(any())).thenReturn(Collections.emptyList());
+
+        assertThrows(NotFoundException.class, () -> sessionService.participateAll(1L, Collections.singletonList(10L)));
     }
 
     @Test
-    void noLongerParticipate_shouldRemoveUserFromSession() {
-        Long sessionId = 1L;
-        Long userId = 10L;
+    void participateAll_shouldRejectEmptyOrOversizedLists() {
+        ReflectionTestUtils.setField(sessionService, "maxBulkSize", 2);
 
-        User user = new User();
-        user.setId(userId);
+        assertThrows(BadRequestException.class, () -> sessionService.participateAll(1L, Collections.emptyList()));
+        assertThrows(BadRequestException.class, () -> sessionService.participateAll(1L, Arrays.asList(1L, 2L, 3L)));
+        verifyNoInteractions(sessionRepository);
+    }
 
-        List<User> users = new ArrayList<>();
-        users.add(user);
+    @Test
+    void participateInAll_shouldReportUnknownSessions() {
+        ReflectionTestUtils.setField(sessionService, "maxBulkSize", 10);
+        when(userRepository.existsById(10L)).thenReturn(true);
+        when(sessionRepository.findAllByIdForUpdate(Arrays.asList(2L, 1L)))
+                .thenReturn(Collections.singletonList(new Session().setId(1L)));
+        when(sessionRepository.findParticipations(any(), any())).thenReturn(Collections.emptyList());
+
+        List<EnrolmentResultDto> results = sessionService.participateInAll(10L, Arrays.asList(2L, 1L));
+
+        assertEquals(EnrolmentResultDto.Status.NOT_FOUND, results.get(0).getStatus());
+        assertEquals(EnrolmentResultDto.Status.ENROLLED, results.get(1).getStatus());
+        verify(sessionRepository).enrol(Collections.singletonMap(1L, Collections.singletonList(10L)));
+    }
 
-        Session session = new Session();
-        session.setId(sessionId);
-        session.setUsers(users);
+    @Test
+    void participateInAll_shouldThrowNotFoundException_whenUserNotFound() {
+        ReflectionTestUtils.setField(sessionService, "maxBulkSize", 10);
+        when(userRepository.existsById(10L)).thenReturn(false);
 
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
-        when(sessionRepository.save(any(Session.class))).thenReturn(session);
+        assertThrows(NotFoundException.class, () -> sessionService.participateInAll(10L, Collections.singletonList(1L)));
+        verify(sessionRepository, never()).enrol(any());
+    }
 
-        sessionService.noLongerParticipate(sessionId, userId);
+    @Test
+    void noLongerParticipate_shouldDeleteSingleRow() {
+        when(sessionRepository.removeParticipant(1L, 10L)).thenReturn(1);
 
-        assertFalse(session.getUsers().contains(user));
-        verify(sessionRepository).save(session);
+        sessionService.noLongerParticipate(1L, 10L);
+
+        verify(sessionRepository).releaseSeat(1L);
+        verify(sessionRepository, never()).save(any(Session.class));
+        verify(sessionCalendarIndex).removeParticipant(1L, 10L);
+        verify(sessionListCache).bump();
     }
 
     @Test
     void noLongerParticipate_shouldThrowNotFoundException_whenSessionNotFound() {
-        when(sessionRepository.findById(anyLong())).thenReturn(Optional.empty());
+        when(sessionRepository.removeParticipant(1L, 1L)).thenReturn(0);
+        when(sessionRepository.existsById(1L)).thenReturn(false);
 
         assertThrows(NotFoundException.class, () -> sessionService.noLongerParticipate(1L, 1L));
     }
 
     @Test
     void noLongerParticipate_shouldThrowBadRequestException_whenUserDoesNotParticipate() {
-        Long sessionId = 1L;
-        Long userId = 10L;
+        when(sessionRepository.removeParticipant(1L, 10L)).thenReturn(0);
+        when(sessionRepository.existsById(1L)).thenReturn(true);
 
-        User user = new User();
-        user.setId(999L);
+        assertThrows(BadRequestException.class, () -> sessionService.noLongerParticipate(1L, 10L));
+        verify(sessionRepository, never()).releaseSeat(anyLong());
+        verify(sessionListCache, never()).bump();
+    }
 
-        Session session = new Session();
-        session.setId(sessionId);
-        session.setUsers(new ArrayList<>(Arrays.asList(user)));
+    @Test
+    void applyParticipationChanges_shouldFreeSeatsBeforeJoiningAndDropStaleChanges() {
+        Session session = new Session().setId(1L).setCapacity(2).setSeatsTaken(2);
+        Map<Long, Boolean> changes = new LinkedHashMap<>();
+        changes.put(10L, false);
+        changes.put(11L, true);
+        changes.put(12L, true);
+        changes.put(13L, true);
+        changes.put(14L, true);
+
+        when(sessionRepository.findAllByIdForUpdate(Collections.singleton(1L))).thenReturn(Collections.singletonList(session));
+        when(userRepository.findExistingIds(any())).thenReturn(Arrays.asList(10L, 11L, 12L, 13L));
+        when(sessionRepository.findParticipations(any(), any()))
+                .thenReturn(Arrays.asList(new Object[] {1L, 10L}, new Object[] {1L, 11L}));
+
+        int written = sessionService.applyParticipationChanges(Collections.singletonMap(1L, changes));
+
+        assertEquals(2, written);
+        verify(sessionRepository).unenrol(Collections.singletonMap(1L, Collections.singletonList(10L)));
+        verify(sessionRepository).enrol(Collections.singletonMap(1L, Collections.singletonList(12L)));
+        verify(sessionCalendarIndex).removeParticipant(1L, 10L);
+        verify(sessionCalendarIndex).addParticipant(1L, 12L);
+        verify(sessionListCache).bump();
+    }
+
+    @Test
+    void applyParticipationChanges_shouldWriteNothing_whenSessionIsGone() {
+        when(sessionRepository.findAllByIdForUpdate(any())).thenReturn(Collections.emptyList());
+
+        int written = sessionService.applyParticipationChanges(
+                Collections.singletonMap(1L, Collections.singletonMap(10L, true)));
 
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
+        assertEquals(0, written);
+        verify(sessionRepository, never()).enrol(any());
+        verify(sessionListCache, never()).bump();
+    }
 
-        assertThrows(BadRequestException.class, () -> sessionService.noLongerParticipate(sessionId, userId));
+    @Test
+    void createAll_shouldSaveInOneCallAndRecountOnlySessionsWithParticipants() {
+        ReflectionTestUtils.setField(sessionService, "maxBulkSize", 10);
+        Session empty = new Session().setId(1L);
+        Session withUsers = new Session().setId(2L).setUsers(Collections.singletonList(new User()));
+        List<Session> sessions = Arrays.asList(empty, withUsers);
+        when(sessionRepository.saveAll(sessions)).thenReturn(sessions);
+
+        List<Session> created = sessionService.createAll(sessions);
+
+        assertSame(sessions, created);
+        InOrder inOrder = inOrder(sessionRepository);
+        inOrder.verify(sessionRepository).flush();
+        inOrder.verify(sessionRepository).recountSeats(2L);
+        verify(sessionRepository, never()).recountSeats(1L);
+        verify(sessionCalendarIndex).put(empty);
+        verify(sessionCalendarIndex).put(withUsers);
+        verify(sessionListCache).bump();
+    }
+
+    @Test
+    void createAll_shouldRejectEmptyOrOversizedLists() {
+        ReflectionTestUtils.setField(sessionService, "maxBulkSize", 1);
+
+        assertThrows(BadRequestException.class, () -> sessionService.createAll(Collections.emptyList()));
+        assertThrows(BadRequestException.class, () -> sessionService.createAll(Arrays.asList(new Session(), new Session())));
+        assertThrows(BadRequestException.class, () -> sessionService.createAll(Collections.singletonList(
+                new Session().setCapacity(1).setUsers(Arrays.asList(new User().setId(10L), new User().setId(11L))))));
+        verifyNoInteractions(sessionRepository);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,91 @@
+package com.openclassrooms.starterjwt.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.dto.TeacherDto;
+import com.openclassrooms.starterjwt.mapper.TeacherMapper;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.services.TeacherDirectory;
+import com.openclassrooms.starterjwt.services.TeacherService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class TeacherDirectoryTest {
+
+    private TeacherService teacherService;
+    private TeacherMapper teacherMapper;
+    private TeacherDirectory teacherDirectory;
+
+    private final Teacher alice = new Teacher().setId(1L).setFirstName("Alice").setLastName("Smith");
+    private final Teacher bob = new Teacher().setId(2L).setFirstName("Bob").setLastName("Martin");
+
+    @BeforeEach
+    void setUp() {
+        teacherService = mock(TeacherService.class);
+        teacherMapper = mock(TeacherMapper.class);
+        teacherDirectory = new TeacherDirectory(teacherService, teacherMapper, new ObjectMapper());
+
+        List<Teacher> teachers = Arrays.asList(alice, bob);
+        when(teacherService.findAll()).thenReturn(teachers);
+        when(teacherMapper.toDto(teachers)).thenReturn(Collections.singletonList(
+                new TeacherDto(1L, "Smith", "Alice", null, null)));
+    }
+
+    @Test
+    void shouldLoadOnceAndServeFromSnapshot() {
+        assertSame(alice, teacherDirectory.findById(1L));
+        assertSame(bob, teacherDirectory.findById(2L));
+        assertNull(teacherDirectory.findById(3L));
+        assertEquals(2, teacherDirectory.findAll().size());
+        assertTrue(new String(teacherDirectory.getJson(), StandardCharsets.UTF_8).contains("\"firstName\":\"Alice\""));
+
+        verify(teacherService, times(1)).findAll();
+        verify(teacherMapper, times(1)).toDto(anyList());
+    }
+
+    @Test
+    void findById_shouldFallBackToTheDatabaseForTeachersAddedSinceTheSnapshot() {
+        Teacher carol = new Teacher().setId(3L).setFirstName("Carol").setLastName("Dupont");
+        when(teacherService.findById(3L)).thenReturn(carol);
+
+        assertSame(carol, teacherDirectory.findById(3L));
+
+        when(teacherService.findAll()).thenReturn(Arrays.asList(alice, bob, carol));
+        assertNull(teacherDirectory.findById(4L));
+        assertSame(carol, teacherDirectory.findById(3L));
+        verify(teacherService, times(2)).findAll();
+        verify(teacherService, times(1)).findById(3L);
+    }
+
+    @Test
+    void invalidate_shouldReloadOnNextRead() {
+        teacherDirectory.findById(1L);
+
+        Teacher carol = new Teacher().setId(3L).setFirstName("Carol").setLastName("Dupont");
+        when(teacherService.findAll()).thenReturn(Collections.singletonList(carol));
+        teacherDirectory.invalidate();
+
+        assertSame(carol, teacherDirectory.findById(3L));
+        assertNull(teacherDirectory.findById(1L));
+        verify(teacherService, times(2)).findAll();
+    }
+
+    @Test
+    void refresh_shouldSwapSnapshot() {
+        List<Teacher> before = teacherDirectory.findAll();
+
+        when(teacherService.findAll()).thenReturn(Collections.singletonList(alice));
+        teacherDirectory.refresh();
+
+        assertEquals(2, before.size());
+        assertEquals(1, teacherDirectory.size());
+        assertThrows(UnsupportedOperationException.class, () -> teacherDirectory.findAll().add(bob));
+    }
+}
@@ -1,10 +1,19 @@
 package com.openclassrooms.starterjwt.service;
 
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.services.RefreshTokenService;
+import com.openclassrooms.starterjwt.security.services.UserDenyList;
+import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
+import com.openclassrooms.starterjwt.services.SessionCalendarIndex;
+import com.openclassrooms.starterjwt.services.SessionListCache;
 import com.openclassrooms.starterjwt.services.UserService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.Optional;
 
@@ -14,12 +23,25 @@ import static org.junit.jupiter.api.Assertions.*;
 class UserServiceTest {
 
     private UserRepository userRepository;
+    private SessionRepository sessionRepository;
+    private UserDenyList userDenyList;
+    private UserDetailsServiceImpl userDetailsService;
+    private RefreshTokenService refreshTokenService;
+    private SessionListCache sessionListCache;
+    private SessionCalendarIndex sessionCalendarIndex;
     private UserService userService;
 
     @BeforeEach
     void setUp() {
         userRepository = mock(UserRepository.class);
-        userService = new UserService(userRepository);
+        sessionRepository = mock(SessionRepository.class);
+        userDenyList = new UserDenyList(60000);
+        userDetailsService = mock(UserDetailsServiceImpl.class);
+        refreshTokenService = mock(RefreshTokenService.class);
+        sessionListCache = mock(SessionListCache.class);
+        sessionCalendarIndex = mock(SessionCalendarIndex.class);
+        userService = new UserService(userRepository, sessionRepository, userDenyList, userDetailsService, refreshTokenService,
+                sessionListCache, sessionCalendarIndex);
     }
 
     @Test
@@ -61,5 +83,35 @@ class UserServiceTest {
         userService.delete(userId);
 
         verify(userRepository).deleteById(userId);
+        assertTrue(userDenyList.isDenied(userId));
+        verify(userDetailsService).evict(userId);
+        verify(refreshTokenService).revokeAll(userId);
+        verify(sessionListCache).bump();
+        verify(sessionCalendarIndex).removeParticipant(userId);
+        InOrder inOrder = inOrder(sessionRepository, userRepository);
+        inOrder.verify(sessionRepository).releaseSeatsOf(userId);
+        inOrder.verify(sessionRepository).removeParticipations(userId);
+        inOrder.verify(userRepository).deleteById(userId);
+    }
+
+    @Test
+    void delete_shouldDenyAndEvictOnlyOnceCommitted() {
+        Long userId = 3L;
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            userService.delete(userId);
+
+            assertFalse(userDenyList.isDenied(userId));
+            verify(userDetailsService, never()).evict(anyLong());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertTrue(userDenyList.isDenied(userId));
+        verify(userDetailsService).evict(userId);
+        verify(sessionListCache).bump();
     }
 }